@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+/**
+ * Benchmark payload, about 65 bytes of JSON per item.
+ */
+public class Catalog {
+
+    private String name;
+    private Item[] items;
+
+    public Catalog() {
+    }
+
+    public static Catalog of(int size) {
+        Catalog catalog = new Catalog();
+        catalog.name = "catalog-" + size;
+        catalog.items = new Item[size];
+        for (int i = 0; i < size; i++) {
+            catalog.items[i] = new Item(i);
+        }
+        return catalog;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Item[] getItems() {
+        return items;
+    }
+}
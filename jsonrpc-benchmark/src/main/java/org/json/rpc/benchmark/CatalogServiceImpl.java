@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class CatalogServiceImpl implements CatalogService {
+
+    private final ConcurrentMap<Integer, Catalog> catalogs = new ConcurrentHashMap<Integer, Catalog>();
+
+    public int add(int a, int b) {
+        return a + b;
+    }
+
+    public Catalog echo(Catalog catalog) {
+        return catalog;
+    }
+
+    public int count(Catalog catalog) {
+        return catalog.getItems().length;
+    }
+
+    public Catalog get(int size) {
+        Catalog catalog = catalogs.get(size);
+        if (catalog == null) {
+            catalog = Catalog.of(size);
+            catalogs.putIfAbsent(size, catalog);
+        }
+        return catalog;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+import org.json.rpc.server.JsonRpcExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side hot path, {@link JsonRpcExecutor#execute} over an in-memory
+ * transport: parse, dispatch, bind, invoke and serialize.
+ * <p>
+ * <code>size</code> is the number of items in the catalog, from a tiny
+ * request up to about 3MB of JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    @Param({"1", "100", "10000", "50000"})
+    public int size;
+
+    private JsonRpcExecutor executor;
+    private String addRequest;
+    private String echoRequest;
+    private String countRequest;
+    private String getRequest;
+
+    @Setup
+    public void setup() {
+        executor = Fixtures.newExecutor();
+        addRequest = Fixtures.request("add", 1, 2);
+        Catalog catalog = Catalog.of(size);
+        echoRequest = Fixtures.request("echo", catalog);
+        countRequest = Fixtures.request("count", catalog);
+        getRequest = Fixtures.request("get", size);
+    }
+
+    @Benchmark
+    public String add() {
+        return execute(addRequest);
+    }
+
+    /**
+     * Large request and response.
+     */
+    @Benchmark
+    public String echo() {
+        return execute(echoRequest);
+    }
+
+    /**
+     * Large request, tiny response.
+     */
+    @Benchmark
+    public String count() {
+        return execute(countRequest);
+    }
+
+    /**
+     * Tiny request, large response.
+     */
+    @Benchmark
+    public String get() {
+        return execute(getRequest);
+    }
+
+    private String execute(String request) {
+        Fixtures.MemoryServerTransport transport = new Fixtures.MemoryServerTransport(request);
+        executor.execute(transport);
+        return transport.response;
+    }
+}
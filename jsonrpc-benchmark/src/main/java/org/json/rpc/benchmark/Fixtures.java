@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.json.rpc.client.JsonRpcClientTransport;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerTransport;
+
+final class Fixtures {
+
+    static final String HANDLE = "catalog";
+
+    private Fixtures() {
+    }
+
+    static JsonRpcExecutor newExecutor() {
+        JsonRpcExecutor executor = new JsonRpcExecutor();
+        executor.addHandler(HANDLE, new CatalogServiceImpl(), CatalogService.class);
+        return executor;
+    }
+
+    static String request(String method, Object... params) {
+        Gson gson = new Gson();
+        JsonObject req = new JsonObject();
+        req.addProperty("jsonrpc", "2.0");
+        req.addProperty("id", 1);
+        req.addProperty("method", HANDLE + "." + method);
+        JsonArray array = new JsonArray();
+        for (Object param : params) {
+            array.add(gson.toJsonTree(param));
+        }
+        req.add("params", array);
+        return req.toString();
+    }
+
+    /**
+     * In-memory server transport, reading the same request on every call.
+     */
+    static final class MemoryServerTransport implements JsonRpcServerTransport {
+
+        private final String request;
+        String response;
+
+        MemoryServerTransport(String request) {
+            this.request = request;
+        }
+
+        public String readRequest() {
+            return request;
+        }
+
+        public void writeResponse(String responseData) {
+            this.response = responseData;
+        }
+    }
+
+    /**
+     * Client transport calling an executor in the same thread, the request
+     * and response are still serialized as they would be over the wire.
+     */
+    static final class LoopbackClientTransport implements JsonRpcClientTransport {
+
+        private final JsonRpcExecutor executor;
+
+        LoopbackClientTransport(JsonRpcExecutor executor) {
+            this.executor = executor;
+        }
+
+        public String call(String requestData) {
+            MemoryServerTransport transport = new MemoryServerTransport(requestData);
+            executor.execute(transport);
+            return transport.response;
+        }
+    }
+}
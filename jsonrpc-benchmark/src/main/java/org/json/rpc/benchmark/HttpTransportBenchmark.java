@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.rpc.client.AsyncHttpJsonRpcClientTransport;
+import org.json.rpc.client.HttpJsonRpcClientTransport;
+import org.json.rpc.client.JsonRpcClientTransport;
+import org.json.rpc.client.JsonRpcInvoker;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client transports against an embedded server on the loopback
+ * interface, run with <code>-t</code> to measure concurrent callers.
+ * <p>
+ * The server writes the response headers and body separately, it has
+ * <code>TCP_NODELAY</code> set so that the body isn't held back by Nagle's
+ * algorithm until the client's delayed ACK, which would cap every caller
+ * at about 25 calls per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpTransportBenchmark {
+
+    @Param({"url-connection", "http-client"})
+    public String transport;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private CatalogService service;
+
+    @Setup
+    public void setup() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        final JsonRpcExecutor executor = Fixtures.newExecutor();
+
+        serverThreads = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/rpc", new HttpHandler() {
+            public void handle(final HttpExchange exchange) throws IOException {
+                executor.execute(new JsonRpcServerTransport() {
+                    public String readRequest() throws IOException {
+                        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                    }
+
+                    public void writeResponse(String responseData) throws IOException {
+                        byte[] data = responseData.getBytes(StandardCharsets.UTF_8);
+                        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+                        exchange.sendResponseHeaders(200, data.length);
+                        OutputStream out = exchange.getResponseBody();
+                        out.write(data);
+                        out.close();
+                    }
+                });
+                exchange.close();
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/rpc");
+        JsonRpcClientTransport clientTransport = ("http-client".equals(transport)
+                ? new AsyncHttpJsonRpcClientTransport(url)
+                : new HttpJsonRpcClientTransport(url));
+        service = new JsonRpcInvoker().get(clientTransport, Fixtures.HANDLE, CatalogService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public int add() {
+        return service.add(1, 2);
+    }
+
+    @Benchmark
+    public Catalog get(Payload payload) {
+        return service.get(payload.size);
+    }
+
+    /**
+     * Only {@link #get} depends on the size of the payload.
+     */
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param({"1", "100", "10000"})
+        public int size;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.benchmark;
+
+import org.json.rpc.client.JsonRpcInvoker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end call through a {@link JsonRpcInvoker} proxy, over a loopback
+ * transport executing the request in the calling thread. Compare with
+ * {@link ExecutorBenchmark} to see the client side share.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvokerBenchmark {
+
+    @Param({"1", "100", "10000", "50000"})
+    public int size;
+
+    private CatalogService service;
+    private Catalog catalog;
+
+    @Setup
+    public void setup() {
+        JsonRpcInvoker invoker = new JsonRpcInvoker();
+        service = invoker.get(new Fixtures.LoopbackClientTransport(Fixtures.newExecutor()),
+                Fixtures.HANDLE, CatalogService.class);
+        catalog = Catalog.of(size);
+    }
+
+    @Benchmark
+    public int add() {
+        return service.add(1, 2);
+    }
+
+    @Benchmark
+    public Catalog echo() {
+        return service.echo(catalog);
+    }
+
+    @Benchmark
+    public int count() {
+        return service.count(catalog);
+    }
+
+    @Benchmark
+    public Catalog get() {
+        return service.get(size);
+    }
+}
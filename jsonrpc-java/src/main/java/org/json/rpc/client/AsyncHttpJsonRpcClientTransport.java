@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import org.json.rpc.commons.JsonRpcClientException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * HTTP transport built on the JDK {@link HttpClient}, requests are sent with
+ * {@link HttpClient#sendAsync} so a single thread can keep many calls in
+ * flight. It can be used with the synchronous API as well.
+ * <p>
+ * Connections are kept alive and reused by the client, HTTP/2 is used when
+ * the server supports it, multiplexing the calls over one connection.
+ * Optionally the number of requests in flight is bounded, with HTTP/1.1
+ * that bounds the number of pooled connections, requests over the limit
+ * are queued without blocking the caller. Synchronous calls read the
+ * response straight from the connection, see
+ * {@link JsonRpcClientStreamTransport}.
+ */
+public class AsyncHttpJsonRpcClientTransport implements JsonRpcClientStreamTransport, JsonRpcAsyncClientTransport {
+
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final URI uri;
+    private final HttpClient client;
+    private final RequestLimiter limiter;
+    private final Map<String, String> headers;
+
+    private volatile Duration requestTimeout;
+
+    public AsyncHttpJsonRpcClientTransport(URL url) {
+        this(url, newHttpClient(DEFAULT_CONNECT_TIMEOUT), 0);
+    }
+
+    /**
+     * @param maxRequests     maximum number of requests in flight, 0 for no limit
+     * @param connectTimeout  timeout for establishing a connection
+     */
+    public AsyncHttpJsonRpcClientTransport(URL url, int maxRequests, long connectTimeout, TimeUnit unit) {
+        this(url, newHttpClient(Duration.ofNanos(unit.toNanos(connectTimeout))), maxRequests);
+    }
+
+    public AsyncHttpJsonRpcClientTransport(URL url, HttpClient client) {
+        this(url, client, 0);
+    }
+
+    /**
+     * @param maxRequests maximum number of requests in flight, 0 for no limit
+     */
+    public AsyncHttpJsonRpcClientTransport(URL url, HttpClient client, int maxRequests) {
+        try {
+            this.uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("invalid url : " + url, e);
+        }
+        this.client = client;
+        this.limiter = (maxRequests > 0 ? new RequestLimiter(maxRequests) : null);
+        this.headers = new ConcurrentHashMap<String, String>();
+    }
+
+    private static HttpClient newHttpClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    public final void setHeader(String key, String value) {
+        this.headers.put(key, value);
+    }
+
+    /**
+     * Timeout for each call, from sending the request until the response
+     * headers have been received. No timeout by default.
+     */
+    public final void setRequestTimeout(long timeout, TimeUnit unit) {
+        this.requestTimeout = (timeout > 0 ? Duration.ofNanos(unit.toNanos(timeout)) : null);
+    }
+
+    public final String call(String requestData) throws Exception {
+        return get(callAsync(requestData));
+    }
+
+    public final Reader callStream(String requestData) throws Exception {
+        return get(send(requestData, HttpResponse.BodyHandlers.ofInputStream(),
+                new BiFunction<HttpResponse<InputStream>, Runnable, Reader>() {
+                    public Reader apply(HttpResponse<InputStream> response, Runnable release) {
+                        // the request is done once the body has been read
+                        InputStream in = new ReleasingInputStream(response.body(), release);
+                        return new InputStreamReader(in, getCharset(response));
+                    }
+                }));
+    }
+
+    public final CompletableFuture<String> callAsync(String requestData) {
+        return send(requestData, HttpResponse.BodyHandlers.ofString(),
+                new BiFunction<HttpResponse<String>, Runnable, String>() {
+                    public String apply(HttpResponse<String> response, Runnable release) {
+                        release.run();
+                        return response.body();
+                    }
+                });
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * @param bodyReader reads the body of a successful response, it has to
+     *                   run the given release callback once the request is
+     *                   done
+     */
+    private <T, R> CompletableFuture<R> send(String requestData,
+                                             final HttpResponse.BodyHandler<T> bodyHandler,
+                                             final BiFunction<HttpResponse<T>, Runnable, R> bodyReader) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestData, StandardCharsets.UTF_8));
+        Duration timeout = requestTimeout;
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            builder.header(entry.getKey(), entry.getValue());
+        }
+        final HttpRequest request = builder.build();
+
+        final CompletableFuture<R> result = new CompletableFuture<R>();
+        final Runnable release = newRelease();
+
+        Runnable send = new Runnable() {
+            public void run() {
+                CompletableFuture<HttpResponse<T>> sent;
+                try {
+                    sent = client.sendAsync(request, bodyHandler);
+                } catch (Throwable t) {
+                    release.run();
+                    result.completeExceptionally(t);
+                    return;
+                }
+
+                sent.whenComplete(new BiConsumer<HttpResponse<T>, Throwable>() {
+                    public void accept(HttpResponse<T> response, Throwable t) {
+                        if (t != null) {
+                            release.run();
+                            result.completeExceptionally(t);
+                            return;
+                        }
+
+                        // notifications are answered without content
+                        int statusCode = response.statusCode();
+                        if (statusCode != HttpURLConnection.HTTP_OK && statusCode != HttpURLConnection.HTTP_NO_CONTENT) {
+                            close(response.body());
+                            release.run();
+                            result.completeExceptionally(new JsonRpcClientException(
+                                    "unexpected status code returned : " + response.statusCode()));
+                            return;
+                        }
+
+                        try {
+                            result.complete(bodyReader.apply(response, release));
+                        } catch (Throwable e) {
+                            close(response.body());
+                            release.run();
+                            result.completeExceptionally(e);
+                        }
+                    }
+                });
+            }
+        };
+
+        if (limiter == null) {
+            send.run();
+        } else {
+            limiter.submit(send);
+        }
+        return result;
+    }
+
+    private Runnable newRelease() {
+        if (limiter == null) {
+            return new Runnable() {
+                public void run() {
+                }
+            };
+        }
+
+        final AtomicBoolean released = new AtomicBoolean();
+        return new Runnable() {
+            public void run() {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release();
+                }
+            }
+        };
+    }
+
+    private static void close(Object body) {
+        if (body instanceof InputStream) {
+            try {
+                ((InputStream) body).close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static Charset getCharset(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                try {
+                    return Charset.forName(param.substring(8).replace("\"", "").trim());
+                } catch (IllegalArgumentException e) {
+                    break;
+                }
+            }
+        }
+        // RFC 4627, JSON text is encoded in UTF-8 by default
+        return StandardCharsets.UTF_8;
+    }
+
+    private static final class ReleasingInputStream extends FilterInputStream {
+
+        private final Runnable release;
+
+        ReleasingInputStream(InputStream in, Runnable release) {
+            super(in);
+            this.release = release;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+}
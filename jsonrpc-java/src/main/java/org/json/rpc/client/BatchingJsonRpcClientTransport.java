@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.json.rpc.commons.JsonRpcClientException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the calls made concurrently through it into JSON-RPC 2.0 batch
+ * requests, and hands each caller the response matching its request id.
+ * <p>
+ * The first call opens a window, calls arriving within
+ * <code>maxDelay</code> or until <code>maxBatchSize</code> calls are
+ * collected go out in the same batch over the underlying transport. A
+ * caller always waits for its window to close, so this pays off for many
+ * threads sharing one invoker, not for a single thread making calls one
+ * after the other.
+ */
+public class BatchingJsonRpcClientTransport implements JsonRpcClientTransport {
+
+    private final JsonRpcClientTransport transport;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private final Object lock = new Object();
+    private Batch current;
+
+    public BatchingJsonRpcClientTransport(JsonRpcClientTransport transport, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (transport == null) {
+            throw new NullPointerException("transport");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize should be at least 1 : " + maxBatchSize);
+        }
+        this.transport = transport;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    public String call(String requestData) throws Exception {
+        JsonElement parsed = new JsonParser().parse(requestData);
+        JsonElement id = (parsed.isJsonObject() ? parsed.getAsJsonObject().get("id") : null);
+        if (id == null || id.isJsonNull()) {
+            // can't be matched to a response (or is a batch already), send it on its own
+            return transport.call(requestData);
+        }
+        JsonObject req = parsed.getAsJsonObject();
+
+        Call call = new Call(id.toString(), req);
+        Batch batch;
+        boolean leader = false;
+
+        synchronized (lock) {
+            if (current != null && current.calls.containsKey(call.id)) {
+                batch = null;
+            } else {
+                if (current == null) {
+                    current = new Batch();
+                    leader = true;
+                }
+                batch = current;
+                batch.calls.put(call.id, call);
+                if (batch.calls.size() >= maxBatchSize) {
+                    current = null;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        if (batch == null) {
+            // same id already waiting in this window
+            return transport.call(requestData);
+        }
+
+        if (leader) {
+            awaitWindow(batch);
+            send(batch);
+        }
+
+        return call.await();
+    }
+
+    private void awaitWindow(Batch batch) {
+        boolean interrupted = false;
+        synchronized (lock) {
+            long deadline = System.nanoTime() + maxDelayNanos;
+            long remaining = maxDelayNanos;
+            while (current == batch && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    // the others in this batch depend on it being sent
+                    interrupted = true;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (current == batch) {
+                current = null;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(Batch batch) {
+        List<Call> calls = new ArrayList<Call>(batch.calls.values());
+        try {
+            if (calls.size() == 1) {
+                Call call = calls.get(0);
+                call.complete(transport.call(call.req.toString()), null);
+                return;
+            }
+
+            JsonArray req = new JsonArray();
+            for (Call call : calls) {
+                req.add(call.req);
+            }
+
+            String responseData = transport.call(req.toString());
+            JsonElement resp = new JsonParser().parse(responseData);
+
+            if (!resp.isJsonArray()) {
+                // e.g. the server could not parse the batch at all
+                for (Call call : calls) {
+                    call.complete(responseData, null);
+                }
+                return;
+            }
+
+            for (JsonElement e : resp.getAsJsonArray()) {
+                if (!e.isJsonObject()) {
+                    continue;
+                }
+                JsonElement id = e.getAsJsonObject().get("id");
+                Call call = (id == null ? null : batch.calls.get(id.toString()));
+                if (call != null) {
+                    call.complete(e.toString(), null);
+                }
+            }
+
+            for (Call call : calls) {
+                call.complete(null, new JsonRpcClientException("no response in batch for id : " + call.id));
+            }
+        } catch (Throwable t) {
+            for (Call call : calls) {
+                call.complete(null, t);
+            }
+        }
+    }
+
+    private static final class Batch {
+        final Map<String, Call> calls = new HashMap<String, Call>();
+    }
+
+    private static final class Call {
+        final String id;
+        final JsonObject req;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private String response;
+        private Throwable error;
+
+        Call(String id, JsonObject req) {
+            this.id = id;
+            this.req = req;
+        }
+
+        /**
+         * Only the first completion counts.
+         */
+        void complete(String response, Throwable error) {
+            if (done.getCount() == 0) {
+                return;
+            }
+            this.response = response;
+            this.error = error;
+            done.countDown();
+        }
+
+        String await() throws Exception {
+            done.await();
+            if (error instanceof Exception) {
+                throw (Exception) error;
+            }
+            if (error != null) {
+                throw new JsonRpcClientException("unable to send batch", error);
+            }
+            return response;
+        }
+    }
+}
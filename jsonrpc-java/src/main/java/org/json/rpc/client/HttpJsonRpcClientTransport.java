@@ -16,23 +16,32 @@
 
 package org.json.rpc.client;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import org.json.rpc.commons.JsonRpcClientException;
+import org.json.rpc.commons.JsonRpcCodec;
+import org.json.rpc.commons.JsonRpcCodecs;
+import org.json.rpc.commons.JsonRpcCompression;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
 
-public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
+public class HttpJsonRpcClientTransport implements JsonRpcClientCodecTransport {
 
     private URL url;
     private final Map<String, String> headers;
+    private volatile JsonRpcCodec codec;
+    private volatile boolean compressRequests;
+    private volatile int compressionThreshold = JsonRpcCompression.DEFAULT_THRESHOLD;
 
     public HttpJsonRpcClientTransport(URL url) {
         this.url = url;
@@ -43,12 +52,85 @@ public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
         this.headers.put(key, value);
     }
 
+    public JsonRpcCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sends requests in a binary encoding, e.g. {@link JsonRpcCodecs#CBOR},
+     * and asks for responses in the same. <code>null</code> (the default)
+     * sends JSON text.
+     */
+    public void setCodec(JsonRpcCodec codec) {
+        this.codec = codec;
+    }
+
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    /**
+     * Sends requests past the compression threshold gzip compressed, off by
+     * default as the server has to support it. Once the server answers a
+     * compressed request with <code>415</code>, the request is sent again
+     * as it is and compression is turned off. Responses are decompressed
+     * either way.
+     */
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Requests smaller than this many bytes are not compressed,
+     * {@link JsonRpcCompression#DEFAULT_THRESHOLD} by default.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
     public final String call(String requestData) throws Exception {
-        String responseData = post(url, headers, requestData);
-        return responseData;
+        byte[] responseData = post(url, headers, requestData.getBytes(), null).data;
+        return new String(responseData);
+    }
+
+    public JsonElement callTree(JsonElement request) throws Exception {
+        JsonRpcCodec codec = this.codec;
+        if (codec == null) {
+            return new JsonParser().parse(call(request.toString()));
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.encode(request, bos);
+
+        Response resp = post(url, headers, bos.toByteArray(), codec);
+        if (JsonRpcCodecs.isContentType(codec, resp.contentType)) {
+            return codec.decode(new ByteArrayInputStream(resp.data));
+        }
+        // the server does not support the codec
+        return new JsonParser().parse(new String(resp.data, StandardCharsets.UTF_8));
     }
 
-    private String post(URL url, Map<String, String> headers, String data)
+    private Response post(URL url, Map<String, String> headers, byte[] data, JsonRpcCodec codec)
+            throws IOException {
+        if (compressRequests && data.length >= compressionThreshold) {
+            Response resp = post(url, headers, data, codec, true);
+            if (resp != null) {
+                return resp;
+            }
+            // the server can't read compressed requests
+            compressRequests = false;
+        }
+        return post(url, headers, data, codec, false);
+    }
+
+    /**
+     * @return <code>null</code> if the server rejected a compressed request
+     */
+    private Response post(URL url, Map<String, String> headers, byte[] data, JsonRpcCodec codec, boolean compress)
             throws IOException {
 
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -59,7 +141,16 @@ public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
             }
         }
 
-        connection.addRequestProperty("Accept-Encoding", "gzip");
+        connection.addRequestProperty("Accept-Encoding", JsonRpcCompression.ACCEPT_ENCODING);
+        if (codec != null) {
+            connection.setRequestProperty("Content-Type", codec.getContentType());
+            connection.setRequestProperty("Accept", codec.getContentType());
+        }
+        if (compress) {
+            // streamed through the compressor, the length is not known up front
+            connection.setRequestProperty("Content-Encoding", JsonRpcCompression.GZIP);
+            connection.setChunkedStreamingMode(0);
+        }
 
         connection.setRequestMethod("POST");
         connection.setDoOutput(true);
@@ -69,13 +160,19 @@ public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
 
         try {
             out = connection.getOutputStream();
+            if (compress) {
+                out = JsonRpcCompression.compress(out, JsonRpcCompression.GZIP);
+            }
 
-            out.write(data.getBytes());
+            out.write(data);
             out.flush();
             out.close();
 
             int statusCode = connection.getResponseCode();
-            if (statusCode != HttpURLConnection.HTTP_OK) {
+            if (compress && statusCode == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+                return null;
+            }
+            if (statusCode != HttpURLConnection.HTTP_OK && statusCode != HttpURLConnection.HTTP_NO_CONTENT) {
                 throw new JsonRpcClientException("unexpected status code returned : " + statusCode);
             }
         } finally {
@@ -84,17 +181,11 @@ public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
             }
         }
 
-        String responseEncoding = connection.getHeaderField("Content-Encoding");
-        responseEncoding = (responseEncoding == null ? "" : responseEncoding.trim());
-
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
         InputStream in = connection.getInputStream();
         try {
-            in = connection.getInputStream();
-            if ("gzip".equalsIgnoreCase(responseEncoding)) {
-                in = new GZIPInputStream(in);
-            }
+            in = JsonRpcCompression.decompress(in, connection.getHeaderField("Content-Encoding"));
             in = new BufferedInputStream(in);
 
             byte[] buff = new byte[1024];
@@ -110,6 +201,16 @@ public class HttpJsonRpcClientTransport implements JsonRpcClientTransport {
             }
         }
 
-        return bos.toString();
+        return new Response(bos.toByteArray(), connection.getContentType());
+    }
+
+    private static final class Response {
+        final byte[] data;
+        final String contentType;
+
+        Response(byte[] data, String contentType) {
+            this.data = data;
+            this.contentType = contentType;
+        }
     }
 }
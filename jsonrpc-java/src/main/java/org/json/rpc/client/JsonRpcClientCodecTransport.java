@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import com.google.gson.JsonElement;
+import org.json.rpc.commons.JsonRpcCodec;
+
+/**
+ * A {@link JsonRpcClientTransport} which can send messages in a binary
+ * {@link JsonRpcCodec} encoding. {@link JsonRpcInvoker} hands the request
+ * over as a tree instead of JSON text while a codec is set.
+ */
+public interface JsonRpcClientCodecTransport extends JsonRpcClientTransport {
+
+    /**
+     * @return the encoding requests are sent in, <code>null</code> to send
+     *         them as JSON text through {@link #call(String)}
+     */
+    JsonRpcCodec getCodec();
+
+    /**
+     * Sends the request encoded with {@link #getCodec()}.
+     *
+     * @return the decoded response, which the server may have answered in
+     *         JSON text
+     */
+    JsonElement callTree(JsonElement request) throws Exception;
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import org.json.rpc.commons.JsonRpcStub;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the client stubs generated for {@link JsonRpcStub}
+ * interfaces. Everything a proxy works out per call is resolved once when
+ * the stub is created: the full method names, and the adapters binding the
+ * arguments and results. A call then only serializes its arguments.
+ */
+public abstract class JsonRpcClientStub {
+
+    private final JsonRpcInvoker invoker;
+    private final JsonRpcClientTransport transport;
+    private final String handle;
+
+    private volatile NotificationSender notificationSender;
+
+    protected JsonRpcClientStub(JsonRpcInvoker invoker, JsonRpcClientTransport transport, String handle) {
+        if (invoker == null) {
+            throw new NullPointerException("invoker");
+        }
+        if (transport == null) {
+            throw new NullPointerException("transport");
+        }
+        if (handle == null) {
+            throw new NullPointerException("handle");
+        }
+        this.invoker = invoker;
+        this.transport = transport;
+        this.handle = handle;
+    }
+
+    /**
+     * @param resultType <code>void.class</code> if there is no result
+     */
+    protected final <T> RemoteMethod<T> method(String name, Type resultType) {
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) invoker.getAdapter(resultType);
+        return new RemoteMethod<T>(handle + "." + name, adapter);
+    }
+
+    protected final <T> TypeAdapter<T> adapter(TypeToken<T> type) {
+        return invoker.getGson().getAdapter(type);
+    }
+
+    /**
+     * Serializes an argument by its declared type.
+     */
+    protected static <A> JsonElement toJson(TypeAdapter<A> adapter, A arg) {
+        return adapter.toJsonTree(arg);
+    }
+
+    /**
+     * Serializes an argument by its runtime type, for arguments declared as
+     * an interface or a class which can be extended.
+     */
+    protected final JsonElement toJson(Object arg) {
+        return invoker.getGson().toJsonTree(arg);
+    }
+
+    protected final <T> T call(RemoteMethod<T> method, JsonArray params) {
+        @SuppressWarnings("unchecked")
+        T result = (T) invoker.invoke(transport, method.name, params, method.adapter, false, null,
+                getCache(method));
+        return result;
+    }
+
+    protected final <T> CompletableFuture<T> callAsync(RemoteMethod<T> method, JsonArray params) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> result = (CompletableFuture<T>) invoker.invoke(transport, method.name, params,
+                method.adapter, true, null, getCache(method));
+        return result;
+    }
+
+    protected final void notify(RemoteMethod<?> method, JsonArray params) {
+        invoker.invoke(transport, method.name, params, null, false, getNotificationSender(), null);
+    }
+
+    private ResponseCache getCache(RemoteMethod<?> method) {
+        return (method.cache != null && invoker.isCacheResponses() ? method.cache : null);
+    }
+
+    private NotificationSender getNotificationSender() {
+        NotificationSender sender = notificationSender;
+        if (sender == null) {
+            synchronized (this) {
+                if (notificationSender == null) {
+                    notificationSender = invoker.newNotificationSender(transport);
+                }
+                sender = notificationSender;
+            }
+        }
+        return sender;
+    }
+
+    /**
+     * A method of the stub, with its full name and result adapter.
+     */
+    protected static final class RemoteMethod<T> {
+
+        final String name;
+        final TypeAdapter<T> adapter;
+        final ResponseCache cache;
+
+        RemoteMethod(String name, TypeAdapter<T> adapter) {
+            this(name, adapter, null);
+        }
+
+        private RemoteMethod(String name, TypeAdapter<T> adapter, ResponseCache cache) {
+            this.name = name;
+            this.adapter = adapter;
+            this.cache = cache;
+        }
+
+        /**
+         * The same method, with its responses cached like the ones of a
+         * {@link org.json.rpc.commons.JsonRpcCacheable} method. The cache is
+         * per stub, like it is per proxy.
+         */
+        public RemoteMethod<T> cached(int maxSize, long ttl, TimeUnit timeUnit) {
+            return new RemoteMethod<T>(name, adapter, new ResponseCache(maxSize, timeUnit.toNanos(ttl)));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+/**
+ * Generates the ids requests are sent with. The id is what a response is
+ * matched to its request by, on transports multiplexing many calls over
+ * one connection in particular, so ids must not repeat among the calls in
+ * flight on a transport.
+ * <p>
+ * Implementations have to be thread-safe, ids are taken by every thread
+ * calling through the proxies of an invoker.
+ */
+public interface JsonRpcIdGenerator {
+
+    /**
+     * @return a positive id
+     */
+    long nextId();
+
+}
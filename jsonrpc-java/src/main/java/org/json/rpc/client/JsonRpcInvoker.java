@@ -20,30 +20,69 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.json.rpc.commons.GsonTypeChecker;
+import org.json.rpc.commons.JsonRpcCacheable;
 import org.json.rpc.commons.JsonRpcClientException;
+import org.json.rpc.commons.JsonRpcNotification;
 import org.json.rpc.commons.JsonRpcRemoteException;
 import org.json.rpc.commons.TypeChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Random;
+import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public final class JsonRpcInvoker {
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonRpcInvoker.class);
 
-    private final Random rand = new Random();
+    private static final int NOTIFICATION_QUEUE_CAPACITY = 10000;
+    private static final int NOTIFICATION_BATCH_SIZE = 100;
+
+    /**
+     * Shared by default, so invokers sending through the same transport
+     * never send the same id.
+     */
+    private static final JsonRpcIdGenerator DEFAULT_ID_GENERATOR = new StripedIdGenerator();
+
+    private volatile JsonRpcIdGenerator idGenerator = DEFAULT_ID_GENERATOR;
 
     private final TypeChecker typeChecker;
 
     private final Gson gson;
 
+    private final ConcurrentMap<Method, ReturnType> returnTypes = new ConcurrentHashMap<Method, ReturnType>();
+
+    private final TypeAdapter<JsonElement> treeAdapter;
+
+    private volatile boolean cacheResponses;
+
+    private volatile Executor notificationExecutor;
+
     public JsonRpcInvoker() {
         this(new GsonTypeChecker(), new Gson());
     }
@@ -59,53 +98,419 @@ public final class JsonRpcInvoker {
     public JsonRpcInvoker(TypeChecker typeChecker, Gson gson) {
         this.typeChecker = typeChecker;
 		this.gson = gson;
+        this.treeAdapter = gson.getAdapter(JsonElement.class);
+    }
+
+    public boolean isCacheResponses() {
+        return cacheResponses;
+    }
+
+    /**
+     * When enabled, methods annotated with {@link JsonRpcCacheable} are
+     * cached by the proxies created by {@link #get}. Identical calls in
+     * flight at the same time are sent as a single request, and results
+     * are reused for the time to live of the annotation. The cache is per
+     * proxy, proxies of the same transport don't share results, so a proxy
+     * is best created once and reused. Errors are never cached. Disabled by
+     * default.
+     */
+    public void setCacheResponses(boolean cacheResponses) {
+        this.cacheResponses = cacheResponses;
+    }
+
+    public JsonRpcIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    /**
+     * Generator of request ids, by default a {@link StripedIdGenerator}
+     * shared by all invokers. Responses are checked to carry the id of
+     * their request either way.
+     */
+    public void setIdGenerator(JsonRpcIdGenerator idGenerator) {
+        if (idGenerator == null) {
+            throw new NullPointerException("idGenerator");
+        }
+        this.idGenerator = idGenerator;
+    }
+
+    public Executor getNotificationExecutor() {
+        return notificationExecutor;
+    }
+
+    /**
+     * Executor sending the {@link JsonRpcNotification} calls of the proxies
+     * created afterwards. By default a pool of daemon threads is used, so
+     * notifications still queued when the JVM exits are lost.
+     */
+    public void setNotificationExecutor(Executor notificationExecutor) {
+        this.notificationExecutor = notificationExecutor;
+    }
+
+    private Executor notificationExecutor() {
+        Executor executor = notificationExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (notificationExecutor == null) {
+                    notificationExecutor = newDaemonPool("jsonrpc-notification");
+                }
+                executor = notificationExecutor;
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService newDaemonPool(final String name) {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
     public <T> T get(final JsonRpcClientTransport transport, final String handle, final Class<T>... classes) {
         for (Class<T> clazz : classes) {
             typeChecker.isValidInterface(clazz);
         }
-        return (T) Proxy.newProxyInstance(JsonRpcInvoker.class.getClassLoader(), classes, new InvocationHandler() {
-            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                return JsonRpcInvoker.this.invoke(handle, transport, method, args);
+        return (T) Proxy.newProxyInstance(JsonRpcInvoker.class.getClassLoader(), classes,
+                new ProxyHandler(handle, transport));
+    }
+
+    private Object invoke(ProxyHandler proxy, Method method, Object[] args) throws Throwable {
+        ReturnType returnType = getReturnType(method);
+        String methodName = proxy.handle + "." + method.getName();
+
+        return invoke(proxy.transport, methodName, createParams(args), returnType.adapter, returnType.async,
+                (returnType.notification ? proxy.getNotificationSender() : null),
+                (returnType.cacheable != null && cacheResponses ? proxy.getCache(method, returnType.cacheable) : null));
+    }
+
+    /**
+     * Calls made by proxies and generated stubs alike.
+     *
+     * @param sender only given for notifications
+     * @param cache  only given for cached calls
+     */
+    Object invoke(JsonRpcClientTransport transport, String methodName, JsonArray params,
+                  TypeAdapter<?> resultAdapter, boolean async, NotificationSender sender, ResponseCache cache) {
+        if (sender != null) {
+            notify(sender, methodName, params);
+            return null;
+        }
+
+        if (cache != null) {
+            return invokeCached(cache, transport, methodName, params, async, resultAdapter);
+        }
+
+        if (async) {
+            if (transport instanceof JsonRpcAsyncClientTransport) {
+                return invokeAsync((JsonRpcAsyncClientTransport) transport, methodName, params, resultAdapter);
+            }
+            CompletableFuture<Object> future = new CompletableFuture<Object>();
+            try {
+                future.complete(call(transport, methodName, params, resultAdapter));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            return future;
+        }
+
+        return call(transport, methodName, params, resultAdapter);
+    }
+
+    private void notify(NotificationSender sender, String methodName, JsonArray params) {
+        JsonObject req = new JsonObject();
+        req.addProperty("jsonrpc", "2.0");
+        req.addProperty("method", methodName);
+        req.add("params", params);
+
+        if (!sender.send(req.toString())) {
+            throw new JsonRpcClientException("notification queue is full, dropped call to " + methodName);
+        }
+    }
+
+    private Object invokeCached(ResponseCache cache, final JsonRpcClientTransport transport,
+                                final String methodName, final JsonArray params, final boolean async,
+                                final TypeAdapter<?> resultAdapter) {
+        String key = methodName + params;
+        CompletableFuture<JsonElement> result = cache.get(key, new Callable<CompletableFuture<JsonElement>>() {
+            @SuppressWarnings("unchecked")
+            public CompletableFuture<JsonElement> call() {
+                if (async && transport instanceof JsonRpcAsyncClientTransport) {
+                    return (CompletableFuture<JsonElement>) (CompletableFuture<?>) invokeAsync(
+                            (JsonRpcAsyncClientTransport) transport, methodName, params, treeAdapter);
+                }
+                return CompletableFuture.completedFuture(
+                        (JsonElement) JsonRpcInvoker.this.call(transport, methodName, params, treeAdapter));
+            }
+        });
+
+        if (async) {
+            return result.thenApply(new Function<JsonElement, Object>() {
+                public Object apply(JsonElement tree) {
+                    return bind(resultAdapter, tree);
+                }
+            });
+        }
+
+        JsonElement tree;
+        try {
+            tree = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonRpcClientException("interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JsonRpcClientException("unable to get data from transport", cause);
+        }
+        return bind(resultAdapter, tree);
+    }
+
+    private static Object bind(TypeAdapter<?> adapter, JsonElement tree) {
+        try {
+            return (adapter == null || tree == null ? null : adapter.fromJsonTree(tree));
+        } catch (IllegalStateException e) {
+            throw new JsonRpcClientException("unable to parse json response", e);
+        } catch (JsonParseException e) {
+            throw new JsonRpcClientException("unable to parse json response", e);
+        }
+    }
+
+    private Object call(JsonRpcClientTransport transport, String methodName,
+                        JsonArray params, TypeAdapter<?> resultAdapter) {
+        if (transport instanceof JsonRpcClientCodecTransport
+                && ((JsonRpcClientCodecTransport) transport).getCodec() != null) {
+            return callTree((JsonRpcClientCodecTransport) transport, methodName, params, resultAdapter);
+        }
+
+        long id = idGenerator.nextId();
+        String requestData = createRequest(id, methodName, params);
+        LOG.debug("JSON-RPC >>  {}", requestData);
+
+        if (transport instanceof JsonRpcClientStreamTransport) {
+            return callStream((JsonRpcClientStreamTransport) transport, id, requestData, resultAdapter);
+        }
+
+        String responseData;
+        try {
+            responseData = transport.call(requestData);
+        } catch (Exception e) {
+            throw new JsonRpcClientException("unable to get data from transport", e);
+        }
+        LOG.debug("JSON-RPC <<  {}", responseData);
+
+        return readResponse(new StringReader(responseData), id, resultAdapter);
+    }
+
+    private Object callTree(JsonRpcClientCodecTransport transport, String methodName,
+                            JsonArray params, TypeAdapter<?> resultAdapter) {
+        long id = idGenerator.nextId();
+        JsonObject request = createRequestTree(id, methodName, params);
+        LOG.debug("JSON-RPC {} >>  {}", transport.getCodec().getContentType(), request);
+
+        JsonElement response;
+        try {
+            response = transport.callTree(request);
+        } catch (Exception e) {
+            throw new JsonRpcClientException("unable to get data from transport", e);
+        }
+        LOG.debug("JSON-RPC <<  {}", response);
+
+        return readResponse(response, id, resultAdapter);
+    }
+
+    private Object callStream(JsonRpcClientStreamTransport transport, long id, String requestData,
+                              TypeAdapter<?> resultAdapter) {
+        Reader responseReader;
+        try {
+            responseReader = transport.callStream(requestData);
+        } catch (Exception e) {
+            throw new JsonRpcClientException("unable to get data from transport", e);
+        }
+
+        try {
+            return readResponse(responseReader, id, resultAdapter);
+        } finally {
+            try {
+                responseReader.close();
+            } catch (IOException e) {
+                LOG.debug("unable to close response stream", e);
+            }
+        }
+    }
+
+    /**
+     * Calls a remote method without blocking, the returned future completes
+     * with the bound result, or exceptionally with a
+     * {@link JsonRpcRemoteException} or {@link JsonRpcClientException}.
+     */
+    public <T> CompletableFuture<T> invokeAsync(JsonRpcAsyncClientTransport transport, String handle,
+                                                String method, Object[] args, Class<T> resultType) {
+        return invokeAsync(transport, handle, method, args, (Type) resultType);
+    }
+
+    /**
+     * @see #invokeAsync(JsonRpcAsyncClientTransport, String, String, Object[], Class)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> invokeAsync(JsonRpcAsyncClientTransport transport, String handle,
+                                                String method, Object[] args, Type resultType) {
+        return (CompletableFuture<T>) invokeAsync(transport, handle + "." + method, createParams(args),
+                getAdapter(resultType));
+    }
+
+    private CompletableFuture<Object> invokeAsync(JsonRpcAsyncClientTransport transport, String methodName,
+                                                  JsonArray params, final TypeAdapter<?> resultAdapter) {
+        final long id = idGenerator.nextId();
+        final String requestData = createRequest(id, methodName, params);
+        LOG.debug("JSON-RPC >>  {}", requestData);
+
+        CompletableFuture<String> response;
+        try {
+            response = transport.callAsync(requestData);
+        } catch (Exception e) {
+            response = new CompletableFuture<String>();
+            response.completeExceptionally(e);
+        }
+
+        return response.handle(new BiFunction<String, Throwable, Object>() {
+            public Object apply(String responseData, Throwable t) {
+                if (t != null) {
+                    if (t instanceof CompletionException && t.getCause() != null) {
+                        t = t.getCause();
+                    }
+                    throw new JsonRpcClientException("unable to get data from transport", t);
+                }
+                LOG.debug("JSON-RPC <<  {}", responseData);
+                return readResponse(new StringReader(responseData), id, resultAdapter);
             }
         });
     }
 
-    private Object invoke(String handleName,
-                          JsonRpcClientTransport transport, Method method,
-                          Object[] args) throws Throwable {
-        int id = rand.nextInt(Integer.MAX_VALUE);
-        String methodName = handleName + "." + method.getName();
+    private String createRequest(long id, String methodName, JsonArray params) {
+        return createRequestTree(id, methodName, params).toString();
+    }
 
+    private JsonObject createRequestTree(long id, String methodName, JsonArray params) {
         JsonObject req = new JsonObject();
         req.addProperty("id", id);
         req.addProperty("method", methodName);
+        req.add("params", params);
+
+        return req;
+    }
 
+    Gson getGson() {
+        return gson;
+    }
+
+    TypeAdapter<?> getAdapter(Type type) {
+        if (type == void.class || type == Void.class) {
+            return null;
+        }
+        return gson.getAdapter(TypeToken.get(type));
+    }
+
+    NotificationSender newNotificationSender(JsonRpcClientTransport transport) {
+        return new NotificationSender(transport, notificationExecutor(),
+                NOTIFICATION_QUEUE_CAPACITY, NOTIFICATION_BATCH_SIZE);
+    }
+
+    private JsonArray createParams(Object[] args) {
         JsonArray params = new JsonArray();
         if (args != null) {
             for (Object o : args) {
                 params.add(gson.toJsonTree(o));
             }
         }
-        req.add("params", params);
+        return params;
+    }
 
-        String requestData = req.toString();
-        LOG.debug("JSON-RPC >>  {}", requestData);
-        String responseData;
+    private Object readResponse(Reader responseReader, long id, TypeAdapter<?> resultAdapter) {
+        JsonElement error = null;
+        Object result = null;
+        String responseId = null;
+
+        // bind the result straight from the token stream, no tree
+        // or string copy of it is needed in between
         try {
-            responseData = transport.call(requestData);
-        } catch (Exception e) {
-            throw new JsonRpcClientException("unable to get data from transport", e);
+            JsonReader in = new JsonReader(responseReader);
+            in.setLenient(true);
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("error".equals(name)) {
+                    error = new JsonParser().parse(in);
+                } else if ("id".equals(name)) {
+                    responseId = readId(in);
+                } else if ("result".equals(name) && resultAdapter != null) {
+                    result = resultAdapter.read(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (IOException e) {
+            throw new JsonRpcClientException("unable to parse json response", e);
+        } catch (IllegalStateException e) {
+            // not the expected structure, thrown by the reader and the adapters
+            throw new JsonRpcClientException("unable to parse json response", e);
+        } catch (JsonParseException e) {
+            throw new JsonRpcClientException("unable to parse json response", e);
         }
-        LOG.debug("JSON-RPC <<  {}", responseData);
 
-        JsonParser parser = new JsonParser();
-        JsonObject resp = (JsonObject) parser.parse(new StringReader(responseData));
+        checkId(id, responseId);
+        checkError(error);
+        return result;
+    }
 
-        JsonElement result = resp.get("result");
-        JsonElement error = resp.get("error");
+    private Object readResponse(JsonElement response, long id, TypeAdapter<?> resultAdapter) {
+        if (!response.isJsonObject()) {
+            throw new JsonRpcClientException("unable to parse json response : " + response);
+        }
+        JsonObject o = response.getAsJsonObject();
+        JsonElement responseId = o.get("id");
+        if (responseId != null && !responseId.isJsonNull()) {
+            checkId(id, responseId.isJsonPrimitive() ? responseId.getAsString() : responseId.toString());
+        }
+        checkError(o.get("error"));
+        return bind(resultAdapter, o.get("result"));
+    }
+
+    /**
+     * @return the id as text, whether sent as a number or a string,
+     *         <code>null</code> if it is null
+     */
+    private static String readId(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return in.nextString();
+        }
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return new JsonParser().parse(in).toString();
+    }
 
+    /**
+     * A response without an id is let through, the server could not read
+     * the request and answers with an error.
+     */
+    private static void checkId(long id, String responseId) {
+        if (responseId != null && !responseId.equals(Long.toString(id))) {
+            throw new JsonRpcClientException("response id " + responseId + " does not match request id " + id);
+        }
+    }
+
+    private static void checkError(JsonElement error) {
         if (error != null && !error.isJsonNull()) {
             if (error.isJsonPrimitive()) {
                 throw new JsonRpcRemoteException(error.getAsString());
@@ -119,11 +524,84 @@ public final class JsonRpcInvoker {
                 throw new JsonRpcRemoteException("unknown error, data = " + error.toString());
             }
         }
+    }
 
-        if (method.getReturnType() == void.class) {
-            return null;
+    private ReturnType getReturnType(Method method) {
+        ReturnType returnType = returnTypes.get(method);
+        if (returnType == null) {
+            returnType = new ReturnType(method);
+            returnTypes.putIfAbsent(method, returnType);
+        }
+        return returnType;
+    }
+
+    /**
+     * How the result of a proxied method is bound, methods returning a
+     * {@link CompletableFuture} (or one of its super types) are called
+     * asynchronously and bound to the type argument of the future.
+     */
+    private final class ReturnType {
+
+        final boolean async;
+        final TypeAdapter<?> adapter;
+        final JsonRpcCacheable cacheable;
+        final boolean notification;
+
+        ReturnType(Method method) {
+            this.async = TypeChecker.isAsync(method);
+            this.adapter = getAdapter(TypeChecker.getResultType(method));
+            this.cacheable = method.getAnnotation(JsonRpcCacheable.class);
+            this.notification = method.isAnnotationPresent(JsonRpcNotification.class);
+            if (notification && method.getReturnType() != void.class) {
+                throw new IllegalArgumentException("notification should return void : " + method);
+            }
+        }
+    }
+
+    /**
+     * Calls of a proxy, along with the state it keeps per handle and
+     * transport.
+     */
+    private final class ProxyHandler implements InvocationHandler {
+
+        final String handle;
+        final JsonRpcClientTransport transport;
+
+        private final ConcurrentMap<Method, ResponseCache> caches = new ConcurrentHashMap<Method, ResponseCache>();
+        private volatile NotificationSender notificationSender;
+
+        ProxyHandler(String handle, JsonRpcClientTransport transport) {
+            this.handle = handle;
+            this.transport = transport;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return JsonRpcInvoker.this.invoke(this, method, args);
         }
 
-        return gson.fromJson(result.toString(), method.getReturnType());
+        ResponseCache getCache(Method method, JsonRpcCacheable cacheable) {
+            ResponseCache cache = caches.get(method);
+            if (cache == null) {
+                cache = ResponseCache.of(cacheable);
+                ResponseCache existing = caches.putIfAbsent(method, cache);
+                if (existing != null) {
+                    cache = existing;
+                }
+            }
+            return cache;
+        }
+
+        NotificationSender getNotificationSender() {
+            NotificationSender sender = notificationSender;
+            if (sender == null) {
+                synchronized (this) {
+                    if (notificationSender == null) {
+                        notificationSender = newNotificationSender(transport);
+                    }
+                    sender = notificationSender;
+                }
+            }
+            return sender;
+        }
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queues notifications and sends them from an executor, whatever has been
+ * queued in the meantime is sent together as a single batch request. At
+ * most one task per sender is running, so notifications are sent in order.
+ */
+final class NotificationSender implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationSender.class);
+
+    private final JsonRpcClientTransport transport;
+    private final Executor executor;
+    private final BlockingQueue<String> queue;
+    private final int maxBatchSize;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    NotificationSender(JsonRpcClientTransport transport, Executor executor, int capacity, int maxBatchSize) {
+        this.transport = transport;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<String>(capacity);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return <code>false</code> if the queue is full
+     */
+    public boolean send(String notification) {
+        if (!queue.offer(notification)) {
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                LOG.warn("unable to schedule sending notifications", e);
+            }
+        }
+    }
+
+    public void run() {
+        try {
+            List<String> batch = new ArrayList<String>();
+            while (queue.drainTo(batch, maxBatchSize) > 0) {
+                send(batch);
+                batch.clear();
+            }
+        } finally {
+            scheduled.set(false);
+            // queued after the last drain but before the flag got cleared
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void send(List<String> batch) {
+        String requestData;
+        if (batch.size() == 1) {
+            requestData = batch.get(0);
+        } else {
+            StringBuilder buff = new StringBuilder().append('[');
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    buff.append(',');
+                }
+                buff.append(batch.get(i));
+            }
+            requestData = buff.append(']').toString();
+        }
+
+        LOG.debug("JSON-RPC notification >>  {}", requestData);
+        try {
+            transport.call(requestData);
+        } catch (Exception e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("unable to send " + batch.size() + " notification(s)", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Bounds the number of requests in flight without blocking, requests over
+ * the limit are queued and started as earlier ones are released.
+ */
+final class RequestLimiter {
+
+    private final int maxInFlight;
+    private final Queue<Runnable> waiting = new ArrayDeque<Runnable>();
+    private int inFlight;
+
+    RequestLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight should be at least 1 : " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Runs the request now or once a slot is free, it has to call
+     * {@link #release()} exactly once when it is done.
+     */
+    public void submit(Runnable request) {
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                waiting.add(request);
+                return;
+            }
+            inFlight++;
+        }
+        request.run();
+    }
+
+    public void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        // the slot is handed over to the next request
+        next.run();
+    }
+}
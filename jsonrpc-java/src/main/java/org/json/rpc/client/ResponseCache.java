@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import com.google.gson.JsonElement;
+import org.json.rpc.commons.JsonRpcCacheable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Results of a cacheable method keyed by its params. Identical calls which
+ * are in flight at the same time share a single request, successful
+ * results are kept until they expire or get evicted as the least recently
+ * used ones. Results are cached as JSON trees, so every caller binds its
+ * own copy.
+ * <p>
+ * There is one per method of a proxy, or of a generated stub, it is not
+ * shared with other proxies of the same transport.
+ */
+final class ResponseCache {
+
+    private final long ttlNanos;
+    private final Map<String, Entry> results;
+    private final ConcurrentMap<String, CompletableFuture<JsonElement>> inFlight
+            = new ConcurrentHashMap<String, CompletableFuture<JsonElement>>();
+
+    ResponseCache(final int maxSize, long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+        this.results = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    static ResponseCache of(JsonRpcCacheable cacheable) {
+        return new ResponseCache(cacheable.maxSize(), cacheable.timeUnit().toNanos(cacheable.ttl()));
+    }
+
+    /**
+     * @param call sends the request, only called when the result is neither
+     *             cached nor already being requested
+     */
+    public CompletableFuture<JsonElement> get(final String key, Callable<CompletableFuture<JsonElement>> call) {
+        JsonElement cached = getCached(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<JsonElement> future = new CompletableFuture<JsonElement>();
+        CompletableFuture<JsonElement> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<JsonElement> response;
+        try {
+            response = call.call();
+        } catch (Throwable t) {
+            response = new CompletableFuture<JsonElement>();
+            response.completeExceptionally(t);
+        }
+
+        response.whenComplete(new BiConsumer<JsonElement, Throwable>() {
+            public void accept(JsonElement result, Throwable t) {
+                if (t == null && result != null) {
+                    put(key, result);
+                }
+                // cached before leaving the flight, so no call slips in between
+                inFlight.remove(key, future);
+                if (t != null) {
+                    future.completeExceptionally(t);
+                } else {
+                    future.complete(result);
+                }
+            }
+        });
+        return future;
+    }
+
+    private synchronized JsonElement getCached(String key) {
+        Entry entry = results.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expires >= 0) {
+            results.remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void put(String key, JsonElement result) {
+        results.put(key, new Entry(result, System.nanoTime() + ttlNanos));
+    }
+
+    private static final class Entry {
+
+        final JsonElement result;
+        final long expires;
+
+        Entry(JsonElement result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+    }
+}
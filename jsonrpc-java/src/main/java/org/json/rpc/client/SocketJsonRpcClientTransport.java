@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.json.rpc.commons.JsonRpcClientException;
+import org.json.rpc.commons.JsonRpcFraming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Transport calling a {@link org.json.rpc.server.JsonRpcSocketServer} over a
+ * single long lived connection, with messages framed as described in
+ * {@link JsonRpcFraming}. Any number of requests can be outstanding on the
+ * connection, responses are matched to them by id, so every request needs
+ * an id which is unique among the outstanding ones, as
+ * {@link JsonRpcInvoker} generates them.
+ * <p>
+ * The connection is opened on the first call and reopened after it failed,
+ * requests outstanding on a failed connection fail. So do all the requests
+ * outstanding when an error without id is received, the server sends one
+ * when it couldn't read the id of a request. Unix domain socket addresses
+ * (Java 16+) can be used as well as TCP ones.
+ */
+public class SocketJsonRpcClientTransport implements JsonRpcClientTransport, JsonRpcAsyncClientTransport, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SocketJsonRpcClientTransport.class);
+
+    private final SocketAddress address;
+
+    private volatile Connection connection;
+    private volatile long requestTimeoutNanos;
+    private volatile boolean closed;
+
+    public SocketJsonRpcClientTransport(SocketAddress address) {
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        this.address = address;
+    }
+
+    /**
+     * Timeout for each call, from sending the request until the response
+     * has been received. No timeout by default.
+     */
+    public final void setRequestTimeout(long timeout, TimeUnit unit) {
+        this.requestTimeoutNanos = (timeout > 0 ? unit.toNanos(timeout) : 0L);
+    }
+
+    public final String call(String requestData) throws Exception {
+        try {
+            return callAsync(requestData).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    public final CompletableFuture<String> callAsync(String requestData) {
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+
+        final String id;
+        try {
+            List<String> ids = getIds(requestData);
+            id = (ids.isEmpty() ? null : ids.get(0));
+        } catch (IOException e) {
+            future.completeExceptionally(new JsonRpcClientException("unable to read request id", e));
+            return future;
+        }
+
+        final Connection c;
+        try {
+            c = getConnection();
+            if (id == null) {
+                // only notifications, nothing will be answered
+                c.write(requestData);
+                future.complete("");
+                return future;
+            }
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        final ConcurrentMap<String, CompletableFuture<String>> pending = c.pending;
+        if (pending.putIfAbsent(id, future) != null) {
+            future.completeExceptionally(new JsonRpcClientException("request with same id in flight : " + id));
+            return future;
+        }
+        future.whenComplete(new BiConsumer<String, Throwable>() {
+            public void accept(String response, Throwable t) {
+                pending.remove(id, future);
+            }
+        });
+
+        long timeout = requestTimeoutNanos;
+        if (timeout > 0) {
+            future.orTimeout(timeout, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            // fails if the connection got closed after it has been picked, so
+            // the request can't be missed when failing the outstanding ones
+            c.write(requestData);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public void close() {
+        closed = true;
+        Connection c = connection;
+        if (c != null) {
+            c.close();
+        }
+    }
+
+    private Connection getConnection() throws IOException {
+        Connection c = connection;
+        if (c != null && c.channel.isOpen()) {
+            return c;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("transport has been closed");
+            }
+            c = connection;
+            if (c == null || !c.channel.isOpen()) {
+                c = new Connection(SocketChannel.open(address));
+                connection = c;
+                c.start();
+            }
+            return c;
+        }
+    }
+
+    private static void received(Map<String, CompletableFuture<String>> pending, String response) {
+        List<String> ids;
+        try {
+            ids = getIds(response);
+        } catch (IOException e) {
+            LOG.warn("unable to read response id", e);
+            return;
+        }
+
+        // the id of a batch is the first one which has been answered
+        for (String id : ids) {
+            CompletableFuture<String> future = pending.get(id);
+            if (future != null) {
+                future.complete(response);
+                return;
+            }
+        }
+
+        if (ids.isEmpty() || ids.contains("null")) {
+            // the server could not read a request, it can't be told which
+            // one, the callers would wait forever for their response
+            LOG.warn("JSON-RPC response without id, failing all pending requests <<  {}", response);
+            for (CompletableFuture<String> future : pending.values()) {
+                future.complete(response);
+            }
+            return;
+        }
+        LOG.debug("JSON-RPC response without pending request <<  {}", response);
+    }
+
+    private void failed(Connection c, IOException e) {
+        synchronized (this) {
+            if (connection == c) {
+                connection = null;
+            }
+        }
+
+        for (CompletableFuture<String> future : c.pending.values()) {
+            future.completeExceptionally(new JsonRpcClientException("connection closed before response was received", e));
+        }
+    }
+
+    /**
+     * Ids of a message, of all elements for a batch, as JSON text.
+     */
+    private static List<String> getIds(String json) throws IOException {
+        List<String> ids = new ArrayList<String>(1);
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.setLenient(true);
+        if (in.peek() == JsonToken.BEGIN_ARRAY) {
+            in.beginArray();
+            while (in.hasNext()) {
+                readId(in, ids);
+            }
+            in.endArray();
+        } else {
+            readId(in, ids);
+        }
+        return ids;
+    }
+
+    private static void readId(JsonReader in, List<String> ids) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return;
+        }
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("id".equals(in.nextName())) {
+                ids.add(new JsonParser().parse(in).toString());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private final class Connection implements Runnable {
+
+        final SocketChannel channel;
+        final ConcurrentMap<String, CompletableFuture<String>> pending
+                = new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        }
+
+        void start() {
+            Thread reader = new Thread(this, "jsonrpc-socket-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void write(String requestData) throws IOException {
+            synchronized (channel) {
+                JsonRpcFraming.write(channel, requestData);
+            }
+        }
+
+        public void run() {
+            IOException failure = null;
+            try {
+                String response;
+                while ((response = JsonRpcFraming.read(channel)) != null) {
+                    received(pending, response);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                close();
+                failed(this, failure);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link JsonRpcIdGenerator}, each thread takes ids from a block of
+ * its own, reserved from a shared counter. Calling threads don't contend
+ * on a shared seed or counter for every request, and ids are unique across
+ * all the invokers using the same instance, unlike random ones.
+ */
+public final class StripedIdGenerator implements JsonRpcIdGenerator {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    private final AtomicLong blocks = new AtomicLong();
+
+    private final ThreadLocal<long[]> ranges = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            // next id, end of the block
+            return new long[2];
+        }
+    };
+
+    public long nextId() {
+        long[] range = ranges.get();
+        if (range[0] == range[1]) {
+            long start = blocks.getAndIncrement() * BLOCK_SIZE;
+            range[0] = start;
+            range[1] = start + BLOCK_SIZE;
+        }
+        // starts at 1, wraps around long before turning negative
+        return (range[0]++ & (Long.MAX_VALUE >>> 1)) + 1;
+    }
+}
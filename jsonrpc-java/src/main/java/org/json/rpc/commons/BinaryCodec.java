@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Walks the JSON tree for the binary codecs, which only have to write the
+ * individual values.
+ * <p>
+ * Numbers which are integral in JSON are written as integers, everything
+ * else as a float, in single precision when that is exact. Integers
+ * outside the <code>long</code> range and decimals with more precision
+ * than a <code>double</code> lose precision.
+ */
+abstract class BinaryCodec implements JsonRpcCodec {
+
+    /**
+     * Longest string accepted while decoding, so a corrupt length can't make
+     * the reader allocate an arbitrary amount of memory.
+     */
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The stream is read a few bytes at a time, it should be buffered.
+     */
+    public JsonElement decode(InputStream in) throws IOException {
+        return read(new DataInputStream(in));
+    }
+
+    public void encode(JsonElement message, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        write(message, data);
+        data.flush();
+    }
+
+    abstract JsonElement read(DataInputStream in) throws IOException;
+
+    abstract void writeNull(DataOutputStream out) throws IOException;
+
+    abstract void writeBoolean(DataOutputStream out, boolean value) throws IOException;
+
+    abstract void writeLong(DataOutputStream out, long value) throws IOException;
+
+    abstract void writeDouble(DataOutputStream out, double value) throws IOException;
+
+    abstract void writeString(DataOutputStream out, byte[] utf8) throws IOException;
+
+    abstract void writeArrayHeader(DataOutputStream out, int size) throws IOException;
+
+    abstract void writeMapHeader(DataOutputStream out, int size) throws IOException;
+
+    private void write(JsonElement e, DataOutputStream out) throws IOException {
+        if (e == null || e.isJsonNull()) {
+            writeNull(out);
+        } else if (e.isJsonArray()) {
+            JsonArray array = e.getAsJsonArray();
+            writeArrayHeader(out, array.size());
+            for (JsonElement item : array) {
+                write(item, out);
+            }
+        } else if (e.isJsonObject()) {
+            JsonObject object = e.getAsJsonObject();
+            writeMapHeader(out, object.entrySet().size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(out, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                write(entry.getValue(), out);
+            }
+        } else {
+            JsonPrimitive p = e.getAsJsonPrimitive();
+            if (p.isBoolean()) {
+                writeBoolean(out, p.getAsBoolean());
+            } else if (p.isNumber()) {
+                writeNumber(out, p.getAsNumber());
+            } else {
+                writeString(out, p.getAsString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void writeNumber(DataOutputStream out, Number n) throws IOException {
+        if (n instanceof Double || n instanceof Float || n instanceof BigDecimal) {
+            writeDouble(out, n.doubleValue());
+            return;
+        }
+        if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+            writeLong(out, n.longValue());
+            return;
+        }
+
+        // e.g. parsed lazily, go by how it was written
+        String s = n.toString();
+        if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            try {
+                writeLong(out, Long.parseLong(s));
+                return;
+            } catch (NumberFormatException e) {
+                // out of range
+            }
+        }
+        writeDouble(out, Double.parseDouble(s));
+    }
+
+    static void writeFloat(DataOutputStream out, int singleType, int doubleType, double value) throws IOException {
+        float f = (float) value;
+        if (f == value) {
+            out.writeByte(singleType);
+            out.writeFloat(f);
+        } else {
+            out.writeByte(doubleType);
+            out.writeDouble(value);
+        }
+    }
+
+    static String readString(DataInputStream in, long length) throws IOException {
+        byte[] data = new byte[checkLength(length)];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    static int checkLength(long length) throws IOException {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("invalid length : " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * @param value read as signed, although it is unsigned
+     */
+    static JsonPrimitive unsigned(long value) {
+        if (value >= 0) {
+            return new JsonPrimitive(value);
+        }
+        return new JsonPrimitive(BigInteger.valueOf(value).add(BigInteger.ONE.shiftLeft(64)));
+    }
+
+    static String mapKey(JsonElement key) throws IOException {
+        if (!key.isJsonPrimitive()) {
+            throw new IOException("unsupported map key : " + key);
+        }
+        return key.getAsString();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * CBOR (RFC 8949) encoding of JSON-RPC messages, as
+ * <code>application/cbor</code>. Definite lengths are written, indefinite
+ * ones are accepted as well. Tags are skipped, byte strings are not
+ * supported as they have no JSON counterpart.
+ */
+public class CborCodec extends BinaryCodec {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG = 6;
+    private static final int SIMPLE = 7;
+
+    private static final int INDEFINITE = 31;
+    private static final int BREAK = 0xff;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int UNDEFINED = 0xf7;
+    private static final int HALF = 0xf9;
+    private static final int FLOAT = 0xfa;
+    private static final int DOUBLE = 0xfb;
+
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    JsonElement read(DataInputStream in) throws IOException {
+        return read(in, in.readUnsignedByte());
+    }
+
+    private JsonElement read(DataInputStream in, int initial) throws IOException {
+        int major = initial >>> 5;
+        int info = initial & 0x1f;
+
+        switch (major) {
+            case UNSIGNED:
+                return unsigned(readArgument(in, info));
+            case NEGATIVE: {
+                long n = readArgument(in, info);
+                if (n >= 0) {
+                    return new JsonPrimitive(-1 - n);
+                }
+                return new JsonPrimitive(BigInteger.ONE.negate().subtract(unsigned(n).getAsBigInteger()));
+            }
+            case BYTES:
+                throw new IOException("byte strings are not supported");
+            case TEXT:
+                return new JsonPrimitive(readText(in, info));
+            case ARRAY: {
+                JsonArray array = new JsonArray();
+                if (info == INDEFINITE) {
+                    int b;
+                    while ((b = in.readUnsignedByte()) != BREAK) {
+                        array.add(read(in, b));
+                    }
+                } else {
+                    for (long n = readArgument(in, info); n > 0; n--) {
+                        array.add(read(in));
+                    }
+                }
+                return array;
+            }
+            case MAP: {
+                JsonObject object = new JsonObject();
+                if (info == INDEFINITE) {
+                    int b;
+                    while ((b = in.readUnsignedByte()) != BREAK) {
+                        object.add(mapKey(read(in, b)), read(in));
+                    }
+                } else {
+                    for (long n = readArgument(in, info); n > 0; n--) {
+                        object.add(mapKey(read(in)), read(in));
+                    }
+                }
+                return object;
+            }
+            case TAG:
+                readArgument(in, info);
+                return read(in);
+            default:
+                return readSimple(in, initial);
+        }
+    }
+
+    private String readText(DataInputStream in, int info) throws IOException {
+        if (info != INDEFINITE) {
+            return readString(in, readArgument(in, info));
+        }
+
+        // chunks, each a definite length text string
+        StringBuilder text = new StringBuilder();
+        int b;
+        while ((b = in.readUnsignedByte()) != BREAK) {
+            if ((b >>> 5) != TEXT || (b & 0x1f) == INDEFINITE) {
+                throw new IOException("invalid text chunk : " + b);
+            }
+            text.append(readString(in, readArgument(in, b & 0x1f)));
+        }
+        return text.toString();
+    }
+
+    private JsonElement readSimple(DataInputStream in, int initial) throws IOException {
+        switch (initial) {
+            case FALSE:
+                return new JsonPrimitive(false);
+            case TRUE:
+                return new JsonPrimitive(true);
+            case NULL:
+            case UNDEFINED:
+                return JsonNull.INSTANCE;
+            case HALF:
+                return new JsonPrimitive(halfToFloat(in.readUnsignedShort()));
+            case FLOAT:
+                return new JsonPrimitive(in.readFloat());
+            case DOUBLE:
+                return new JsonPrimitive(in.readDouble());
+            default:
+                throw new IOException("unsupported simple value : " + initial);
+        }
+    }
+
+    private static long readArgument(DataInputStream in, int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return in.readUnsignedByte();
+            case 25:
+                return in.readUnsignedShort();
+            case 26:
+                return in.readInt() & 0xffffffffL;
+            case 27:
+                return in.readLong();
+            default:
+                throw new IOException("invalid additional info : " + info);
+        }
+    }
+
+    private static float halfToFloat(int half) {
+        int exp = (half >> 10) & 0x1f;
+        int mant = half & 0x3ff;
+        float value;
+        if (exp == 0) {
+            value = (float) (mant * Math.pow(2, -24));
+        } else if (exp == 31) {
+            value = (mant == 0 ? Float.POSITIVE_INFINITY : Float.NaN);
+        } else {
+            value = (float) ((mant + 1024) * Math.pow(2, exp - 25));
+        }
+        return ((half & 0x8000) != 0 ? -value : value);
+    }
+
+    void writeNull(DataOutputStream out) throws IOException {
+        out.writeByte(NULL);
+    }
+
+    void writeBoolean(DataOutputStream out, boolean value) throws IOException {
+        out.writeByte(value ? TRUE : FALSE);
+    }
+
+    void writeLong(DataOutputStream out, long value) throws IOException {
+        if (value >= 0) {
+            writeHead(out, UNSIGNED, value);
+        } else {
+            writeHead(out, NEGATIVE, -1 - value);
+        }
+    }
+
+    void writeDouble(DataOutputStream out, double value) throws IOException {
+        writeFloat(out, FLOAT, DOUBLE, value);
+    }
+
+    void writeString(DataOutputStream out, byte[] utf8) throws IOException {
+        writeHead(out, TEXT, utf8.length);
+        out.write(utf8);
+    }
+
+    void writeArrayHeader(DataOutputStream out, int size) throws IOException {
+        writeHead(out, ARRAY, size);
+    }
+
+    void writeMapHeader(DataOutputStream out, int size) throws IOException {
+        writeHead(out, MAP, size);
+    }
+
+    private static void writeHead(DataOutputStream out, int major, long value) throws IOException {
+        int type = major << 5;
+        if (value < 24) {
+            out.writeByte(type | (int) value);
+        } else if (value <= 0xff) {
+            out.writeByte(type | 24);
+            out.writeByte((int) value);
+        } else if (value <= 0xffff) {
+            out.writeByte(type | 25);
+            out.writeShort((int) value);
+        } else if (value <= 0xffffffffL) {
+            out.writeByte(type | 26);
+            out.writeInt((int) value);
+        } else {
+            out.writeByte(type | 27);
+            out.writeLong(value);
+        }
+    }
+}
@@ -25,12 +25,30 @@ import java.util.Set;
 
 public class GsonTypeChecker extends TypeChecker {
 
+    /**
+     * Types are validated once per JVM and checker class, see
+     * {@link TypeValidation.Cache}.
+     */
+    private static final TypeValidation.Cache VALIDATIONS = new TypeValidation.Cache();
+
     @Override
     public boolean isValidType(Class<?> clazz, boolean throwException) {
-        return isValidType(clazz, throwException, null);
+        TypeValidation validation = VALIDATIONS.get(clazz, getClass());
+        if (validation == null) {
+            validation = VALIDATIONS.put(clazz, getClass(), validateType(clazz));
+        }
+        return validation.check(throwException);
+    }
+
+    private static TypeValidation validateType(Class<?> clazz) {
+        try {
+            return TypeValidation.of(isValidType(clazz, true, null), "invalid type : " + clazz);
+        } catch (RuntimeException e) {
+            return TypeValidation.failed(e);
+        }
     }
 
-    private boolean isValidType(Class<?> clazz, boolean throwException, Set<Class<?>> visited) {
+    private static boolean isValidType(Class<?> clazz, boolean throwException, Set<Class<?>> visited) {
         if (clazz.isPrimitive()) {
             return true;
         }
@@ -56,7 +74,7 @@ public class GsonTypeChecker extends TypeChecker {
         }
 
         if (clazz.isArray()) {
-            return this.isValidType(clazz.getComponentType(), throwException, visited);
+            return isValidType(clazz.getComponentType(), throwException, visited);
         }
 
         /**
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import com.google.gson.JsonElement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A binary wire encoding of the JSON-RPC messages, used in place of JSON
+ * text when both sides agree on it. Messages keep the JSON data model, so
+ * handlers and {@link TypeChecker} rules don't change with the encoding.
+ *
+ * @see JsonRpcCodecs
+ */
+public interface JsonRpcCodec {
+
+    /**
+     * The media type identifying the encoding, e.g. <code>application/cbor</code>.
+     */
+    String getContentType();
+
+    /**
+     * Reads a single message, the stream is left open.
+     */
+    JsonElement decode(InputStream in) throws IOException;
+
+    /**
+     * Writes a single message, the stream is left open.
+     */
+    void encode(JsonElement message, OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content negotiation of {@link JsonRpcCodec}s over HTTP. JSON text stays
+ * the default, a codec is only used when the request names it.
+ */
+public final class JsonRpcCodecs {
+
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    public static final JsonRpcCodec CBOR = new CborCodec();
+    public static final JsonRpcCodec MESSAGE_PACK = new MessagePackCodec();
+
+    private static final List<JsonRpcCodec> DEFAULTS = Collections.unmodifiableList(
+            Arrays.asList(CBOR, MESSAGE_PACK));
+
+    private JsonRpcCodecs() {
+    }
+
+    /**
+     * The codecs supported out of the box, CBOR and MessagePack.
+     */
+    public static List<JsonRpcCodec> defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param contentType a <code>Content-Type</code> header value, parameters
+     *                    like the charset are ignored
+     * @return the codec of the given content type, <code>null</code> if it is
+     *         JSON text or not supported
+     */
+    public static JsonRpcCodec forContentType(List<JsonRpcCodec> codecs, String contentType) {
+        for (JsonRpcCodec codec : codecs) {
+            if (isContentType(codec, contentType)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param contentType a <code>Content-Type</code> header value, may be
+     *                    <code>null</code>
+     */
+    public static boolean isContentType(JsonRpcCodec codec, String contentType) {
+        return (contentType != null && codec.getContentType().equalsIgnoreCase(mediaType(contentType)));
+    }
+
+    /**
+     * Picks the response encoding from an <code>Accept</code> header, the
+     * first media type listed which is either JSON or one of the codecs wins.
+     * Quality values are not weighed.
+     *
+     * @param requestCodec used when the header does not name a known encoding,
+     *                     <code>null</code> for JSON text
+     * @return <code>null</code> to answer with JSON text
+     */
+    public static JsonRpcCodec negotiate(List<JsonRpcCodec> codecs, String accept, JsonRpcCodec requestCodec) {
+        if (accept == null) {
+            return requestCodec;
+        }
+        for (String range : accept.split(",")) {
+            String mediaType = mediaType(range);
+            if (JSON_CONTENT_TYPE.equalsIgnoreCase(mediaType)) {
+                return null;
+            }
+            JsonRpcCodec codec = forContentType(codecs, mediaType);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        return requestCodec;
+    }
+
+    private static String mediaType(String value) {
+        int i = value.indexOf(';');
+        return (i < 0 ? value : value.substring(0, i)).trim();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content coding of request and response bodies, <code>gzip</code>
+ * and <code>deflate</code> as supported by the JDK.
+ */
+public final class JsonRpcCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Bodies smaller than this many bytes are sent as they are, compressing
+     * them costs more than it saves.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * The value of an <code>Accept-Encoding</code> header listing the
+     * supported codings.
+     */
+    public static final String ACCEPT_ENCODING = GZIP + ", " + DEFLATE;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private JsonRpcCompression() {
+    }
+
+    /**
+     * Picks the coding with the highest quality value from an
+     * <code>Accept-Encoding</code> header, <code>gzip</code> on a tie.
+     *
+     * @return <code>null</code> if the body should not be compressed
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        float gzip = -1f;
+        float deflate = -1f;
+        float any = -1f;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = quality(parts);
+            } else if (DEFLATE.equals(coding)) {
+                deflate = quality(parts);
+            } else if ("*".equals(coding)) {
+                any = quality(parts);
+            }
+        }
+
+        // codings not listed get the quality of "*", if given
+        gzip = (gzip < 0f ? Math.max(any, 0f) : gzip);
+        deflate = (deflate < 0f ? Math.max(any, 0f) : deflate);
+        if (gzip > 0f && gzip >= deflate) {
+            return GZIP;
+        }
+        return (deflate > 0f ? DEFLATE : null);
+    }
+
+    private static float quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0f;
+                }
+            }
+        }
+        return 1f;
+    }
+
+    /**
+     * @param contentEncoding the <code>Content-Encoding</code> header value,
+     *                        <code>null</code> if the body is not compressed
+     * @throws IOException if the coding is not supported
+     */
+    public static InputStream decompress(InputStream in, String contentEncoding) throws IOException {
+        String coding = normalize(contentEncoding);
+        if (coding.length() == 0) {
+            return in;
+        }
+        if (GZIP.equals(coding)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        if (DEFLATE.equals(coding)) {
+            return new InflaterInputStream(in);
+        }
+        throw new IOException("unsupported content encoding : " + contentEncoding);
+    }
+
+    /**
+     * @param contentEncoding the <code>Content-Encoding</code> header value,
+     *                        may be <code>null</code>
+     * @return whether {@link #decompress(InputStream, String)} can read it
+     */
+    public static boolean isSupported(String contentEncoding) {
+        String coding = normalize(contentEncoding);
+        return (coding.length() == 0 || GZIP.equals(coding) || DEFLATE.equals(coding));
+    }
+
+    private static String normalize(String contentEncoding) {
+        String coding = (contentEncoding == null ? "" : contentEncoding.trim().toLowerCase());
+        if ("identity".equals(coding)) {
+            return "";
+        }
+        return ("x-gzip".equals(coding) ? GZIP : coding);
+    }
+
+    /**
+     * The body is compressed as it is written, closing the returned stream
+     * finishes it and closes the given one.
+     *
+     * @param coding {@link #GZIP} or {@link #DEFLATE}
+     */
+    public static OutputStream compress(OutputStream out, String coding) throws IOException {
+        if (GZIP.equals(coding)) {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        if (DEFLATE.equals(coding)) {
+            return new DeflaterOutputStream(out);
+        }
+        throw new IOException("unsupported content encoding : " + coding);
+    }
+}
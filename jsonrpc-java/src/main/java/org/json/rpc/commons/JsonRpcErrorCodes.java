@@ -35,6 +35,10 @@ public final class JsonRpcErrorCodes {
         return SERVER_ERROR_START - n;
     }
 
+    public static boolean isServerError(int code) {
+        return code <= SERVER_ERROR_START && code > SERVER_ERROR_START - 100;
+    }
+
     private JsonRpcErrorCodes() {
         throw new AssertionError();
     }
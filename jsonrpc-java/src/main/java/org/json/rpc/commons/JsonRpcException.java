@@ -25,4 +25,12 @@ public class JsonRpcException extends RuntimeException {
     public JsonRpcException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * @param writableStackTrace <code>false</code> for exceptions which are
+     *                           preallocated, or only carry their cause
+     */
+    protected JsonRpcException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framing of JSON-RPC messages on a byte stream, e.g. a socket. A frame is
+ * the UTF-8 encoded message prefixed with its length in bytes, as a 4 byte
+ * big-endian integer. Unlike newline delimited framing, it does not depend
+ * on the JSON being rendered on a single line.
+ */
+public final class JsonRpcFraming {
+
+    /**
+     * Frames larger than this are rejected, so a corrupt length can't make
+     * the reader allocate an arbitrary amount of memory.
+     */
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Size of the length prefix.
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /**
+     * Writes a frame in a single buffer. Concurrent writers have to be
+     * synchronized by the caller.
+     */
+    public static void write(WritableByteChannel channel, String message) throws IOException {
+        ByteBuffer buff = encode(message);
+        while (buff.hasRemaining()) {
+            channel.write(buff);
+        }
+    }
+
+    /**
+     * @return the frame of the message, ready to be written to a non-blocking
+     *         channel
+     */
+    public static ByteBuffer encode(String message) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        if (data.length > MAX_FRAME_SIZE) {
+            throw new IOException("frame too large : " + data.length);
+        }
+
+        ByteBuffer buff = ByteBuffer.allocate(HEADER_SIZE + data.length);
+        buff.putInt(data.length).put(data).flip();
+        return buff;
+    }
+
+    /**
+     * Validates the length read from a frame header.
+     */
+    public static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("invalid frame length : " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads the next frame, blocking until it is complete.
+     *
+     * @return <code>null</code> if the stream ended before a new frame
+     */
+    public static String read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header, true)) {
+            return null;
+        }
+
+        int length = checkLength(header.getInt(0));
+
+        ByteBuffer data = ByteBuffer.allocate(length);
+        readFully(channel, data, false);
+        return new String(data.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buff, boolean eofAllowed)
+            throws IOException {
+        while (buff.hasRemaining()) {
+            if (channel.read(buff) < 0) {
+                if (eofAllowed && buff.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("stream ended within a frame");
+            }
+        }
+        return true;
+    }
+
+    private JsonRpcFraming() {
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * MessagePack encoding of JSON-RPC messages, as
+ * <code>application/msgpack</code>. Binary and extension types are not
+ * supported as they have no JSON counterpart.
+ */
+public class MessagePackCodec extends BinaryCodec {
+
+    public static final String CONTENT_TYPE = "application/msgpack";
+
+    private static final int NIL = 0xc0;
+    private static final int FALSE = 0xc2;
+    private static final int TRUE = 0xc3;
+    private static final int FLOAT32 = 0xca;
+    private static final int FLOAT64 = 0xcb;
+    private static final int UINT8 = 0xcc;
+    private static final int UINT16 = 0xcd;
+    private static final int UINT32 = 0xce;
+    private static final int UINT64 = 0xcf;
+    private static final int INT8 = 0xd0;
+    private static final int INT16 = 0xd1;
+    private static final int INT32 = 0xd2;
+    private static final int INT64 = 0xd3;
+    private static final int STR8 = 0xd9;
+    private static final int STR16 = 0xda;
+    private static final int STR32 = 0xdb;
+    private static final int ARRAY16 = 0xdc;
+    private static final int ARRAY32 = 0xdd;
+    private static final int MAP16 = 0xde;
+    private static final int MAP32 = 0xdf;
+
+    private static final int FIXMAP = 0x80;
+    private static final int FIXARRAY = 0x90;
+    private static final int FIXSTR = 0xa0;
+    private static final int NEGATIVE_FIXINT = 0xe0;
+
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    JsonElement read(DataInputStream in) throws IOException {
+        int b = in.readUnsignedByte();
+
+        if (b < FIXMAP) {
+            return new JsonPrimitive(b);
+        }
+        if (b >= NEGATIVE_FIXINT) {
+            return new JsonPrimitive((int) (byte) b);
+        }
+        if (b < FIXARRAY) {
+            return readMap(in, b & 0x0f);
+        }
+        if (b < FIXSTR) {
+            return readArray(in, b & 0x0f);
+        }
+        if (b < NIL) {
+            return new JsonPrimitive(readString(in, b & 0x1f));
+        }
+
+        switch (b) {
+            case NIL:
+                return JsonNull.INSTANCE;
+            case FALSE:
+                return new JsonPrimitive(false);
+            case TRUE:
+                return new JsonPrimitive(true);
+            case FLOAT32:
+                return new JsonPrimitive(in.readFloat());
+            case FLOAT64:
+                return new JsonPrimitive(in.readDouble());
+            case UINT8:
+                return new JsonPrimitive(in.readUnsignedByte());
+            case UINT16:
+                return new JsonPrimitive(in.readUnsignedShort());
+            case UINT32:
+                return new JsonPrimitive(in.readInt() & 0xffffffffL);
+            case UINT64:
+                return unsigned(in.readLong());
+            case INT8:
+                return new JsonPrimitive(in.readByte());
+            case INT16:
+                return new JsonPrimitive(in.readShort());
+            case INT32:
+                return new JsonPrimitive(in.readInt());
+            case INT64:
+                return new JsonPrimitive(in.readLong());
+            case STR8:
+                return new JsonPrimitive(readString(in, in.readUnsignedByte()));
+            case STR16:
+                return new JsonPrimitive(readString(in, in.readUnsignedShort()));
+            case STR32:
+                return new JsonPrimitive(readString(in, in.readInt() & 0xffffffffL));
+            case ARRAY16:
+                return readArray(in, in.readUnsignedShort());
+            case ARRAY32:
+                return readArray(in, in.readInt() & 0xffffffffL);
+            case MAP16:
+                return readMap(in, in.readUnsignedShort());
+            case MAP32:
+                return readMap(in, in.readInt() & 0xffffffffL);
+            default:
+                throw new IOException("unsupported type : " + b);
+        }
+    }
+
+    private JsonArray readArray(DataInputStream in, long size) throws IOException {
+        JsonArray array = new JsonArray();
+        for (long n = size; n > 0; n--) {
+            array.add(read(in));
+        }
+        return array;
+    }
+
+    private JsonObject readMap(DataInputStream in, long size) throws IOException {
+        JsonObject object = new JsonObject();
+        for (long n = size; n > 0; n--) {
+            object.add(mapKey(read(in)), read(in));
+        }
+        return object;
+    }
+
+    void writeNull(DataOutputStream out) throws IOException {
+        out.writeByte(NIL);
+    }
+
+    void writeBoolean(DataOutputStream out, boolean value) throws IOException {
+        out.writeByte(value ? TRUE : FALSE);
+    }
+
+    void writeLong(DataOutputStream out, long value) throws IOException {
+        if (value >= 0) {
+            if (value < FIXMAP) {
+                out.writeByte((int) value);
+            } else if (value <= 0xff) {
+                out.writeByte(UINT8);
+                out.writeByte((int) value);
+            } else if (value <= 0xffff) {
+                out.writeByte(UINT16);
+                out.writeShort((int) value);
+            } else if (value <= 0xffffffffL) {
+                out.writeByte(UINT32);
+                out.writeInt((int) value);
+            } else {
+                out.writeByte(UINT64);
+                out.writeLong(value);
+            }
+        } else if (value >= -32) {
+            out.writeByte((int) value);
+        } else if (value >= Byte.MIN_VALUE) {
+            out.writeByte(INT8);
+            out.writeByte((int) value);
+        } else if (value >= Short.MIN_VALUE) {
+            out.writeByte(INT16);
+            out.writeShort((int) value);
+        } else if (value >= Integer.MIN_VALUE) {
+            out.writeByte(INT32);
+            out.writeInt((int) value);
+        } else {
+            out.writeByte(INT64);
+            out.writeLong(value);
+        }
+    }
+
+    void writeDouble(DataOutputStream out, double value) throws IOException {
+        writeFloat(out, FLOAT32, FLOAT64, value);
+    }
+
+    void writeString(DataOutputStream out, byte[] utf8) throws IOException {
+        int length = utf8.length;
+        if (length < 32) {
+            out.writeByte(FIXSTR | length);
+        } else if (length <= 0xff) {
+            out.writeByte(STR8);
+            out.writeByte(length);
+        } else if (length <= 0xffff) {
+            out.writeByte(STR16);
+            out.writeShort(length);
+        } else {
+            out.writeByte(STR32);
+            out.writeInt(length);
+        }
+        out.write(utf8);
+    }
+
+    void writeArrayHeader(DataOutputStream out, int size) throws IOException {
+        writeHeader(out, FIXARRAY, ARRAY16, ARRAY32, size);
+    }
+
+    void writeMapHeader(DataOutputStream out, int size) throws IOException {
+        writeHeader(out, FIXMAP, MAP16, MAP32, size);
+    }
+
+    private static void writeHeader(DataOutputStream out, int fix, int type16, int type32, int size) throws IOException {
+        if (size < 16) {
+            out.writeByte(fix | size);
+        } else if (size <= 0xffff) {
+            out.writeByte(type16);
+            out.writeShort(size);
+        } else {
+            out.writeByte(type32);
+            out.writeInt(size);
+        }
+    }
+}
@@ -18,9 +18,20 @@ package org.json.rpc.commons;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class TypeChecker {
 
+    /**
+     * Interfaces are validated once per JVM and checker class, see
+     * {@link TypeValidation.Cache}, proxies and handlers of the same
+     * interface don't walk its methods again.
+     */
+    private static final TypeValidation.Cache INTERFACES = new TypeValidation.Cache();
+
     public boolean isValidType(Class<?> clazz) {
         return isValidType(clazz, false);
     }
@@ -37,8 +48,54 @@ public abstract class TypeChecker {
         return isValidInterface(clazz, false);
     }
 
+    /**
+     * Methods returning a {@link CompletableFuture}, or one of the interfaces
+     * it implements, are asynchronous.
+     */
+    public static boolean isAsync(Method method) {
+        Class<?> clazz = method.getReturnType();
+        return (clazz != Object.class && clazz.isAssignableFrom(CompletableFuture.class));
+    }
+
+    /**
+     * The type of the value a method returns to the caller, for an
+     * asynchronous method it is the type argument of the future.
+     */
+    public static Type getResultType(Method method) {
+        Type type = method.getGenericReturnType();
+        if (!isAsync(method)) {
+            return type;
+        }
+
+        if (!(type instanceof ParameterizedType)) {
+            return Object.class;
+        }
+        type = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (type instanceof WildcardType) {
+            type = ((WildcardType) type).getUpperBounds()[0];
+        }
+        return type;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return Object.class;
+    }
+
     public boolean isValidMethod(Method method, boolean throwException) {
-        Class<?> returnType = method.getReturnType();
+        if (method.isAnnotationPresent(JsonRpcNotification.class) && method.getReturnType() != void.class) {
+            if (throwException) {
+                throw new IllegalArgumentException("notification should return void : " + method);
+            }
+            return false;
+        }
+
+        Class<?> returnType = getRawType(getResultType(method));
         boolean result = false;
         try {
             result = isValidType(returnType, throwException);
@@ -81,6 +138,22 @@ public abstract class TypeChecker {
     }
 
     public boolean isValidInterface(Class<?> clazz, boolean throwException) {
+        TypeValidation validation = INTERFACES.get(clazz, getClass());
+        if (validation == null) {
+            validation = INTERFACES.put(clazz, getClass(), validateInterface(clazz));
+        }
+        return validation.check(throwException);
+    }
+
+    private TypeValidation validateInterface(Class<?> clazz) {
+        try {
+            return TypeValidation.of(checkInterface(clazz, true), "invalid interface : " + clazz);
+        } catch (RuntimeException e) {
+            return TypeValidation.failed(e);
+        }
+    }
+
+    private boolean checkInterface(Class<?> clazz, boolean throwException) {
         if (!clazz.isInterface()) {
             if (throwException) {
                 throw new IllegalArgumentException("not an interface : " + clazz);
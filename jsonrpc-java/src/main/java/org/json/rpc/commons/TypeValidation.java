@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.commons;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The memoized outcome of validating a type, an invalid one keeps the
+ * exception describing why, to be thrown again on request.
+ */
+final class TypeValidation {
+
+    static final TypeValidation VALID = new TypeValidation(null);
+
+    private final RuntimeException error;
+
+    private TypeValidation(RuntimeException error) {
+        this.error = error;
+    }
+
+    static TypeValidation of(boolean valid, String message) {
+        return (valid ? VALID : new TypeValidation(new IllegalArgumentException(message)));
+    }
+
+    static TypeValidation failed(RuntimeException error) {
+        return new TypeValidation(error);
+    }
+
+    boolean check(boolean throwException) {
+        if (error == null) {
+            return true;
+        }
+        if (!throwException) {
+            return false;
+        }
+        if (error instanceof IllegalArgumentException) {
+            // a fresh stack trace for this caller
+            throw new IllegalArgumentException(error.getMessage(), error.getCause());
+        }
+        throw error;
+    }
+
+    /**
+     * Outcomes shared by the JVM, per checker class and per validated class.
+     * Checkers are expected to be stateless, so all instances of a checker
+     * class share their outcomes, while a subclass overriding the checks
+     * gets its own.
+     * <p>
+     * Outcomes are kept with the checker class, the validated classes are
+     * held weakly, so neither holds the class loader of the other back from
+     * being unloaded. The outcomes themselves are held weakly as well, an
+     * invalid one keeps its exception and is validated again once that has
+     * been collected, valid ones are all {@link #VALID} and stay.
+     */
+    static final class Cache {
+
+        private static final Reference<TypeValidation> VALID_REF = new WeakReference<TypeValidation>(VALID);
+
+        private final ClassValue<Map<Class<?>, Reference<TypeValidation>>> validations
+                = new ClassValue<Map<Class<?>, Reference<TypeValidation>>>() {
+            @Override
+            protected Map<Class<?>, Reference<TypeValidation>> computeValue(Class<?> checker) {
+                return new WeakHashMap<Class<?>, Reference<TypeValidation>>();
+            }
+        };
+
+        /**
+         * @return <code>null</code> if the class has not been validated by
+         *         this checker class yet
+         */
+        TypeValidation get(Class<?> type, Class<? extends TypeChecker> checker) {
+            Map<Class<?>, Reference<TypeValidation>> map = validations.get(checker);
+            Reference<TypeValidation> ref;
+            synchronized (map) {
+                ref = map.get(type);
+            }
+            return (ref != null ? ref.get() : null);
+        }
+
+        /**
+         * @return the outcome to use, the one of a concurrent validation if
+         *         it has been stored first
+         */
+        TypeValidation put(Class<?> type, Class<? extends TypeChecker> checker, TypeValidation validation) {
+            Map<Class<?>, Reference<TypeValidation>> map = validations.get(checker);
+            synchronized (map) {
+                Reference<TypeValidation> ref = map.get(type);
+                TypeValidation previous = (ref != null ? ref.get() : null);
+                if (previous != null) {
+                    return previous;
+                }
+                map.put(type, (validation == VALID ? VALID_REF : new WeakReference<TypeValidation>(validation)));
+                return validation;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.json.rpc.commons.JsonRpcException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handles the requests of a batch, one after the other on the calling
+ * thread, or concurrently on a batch executor. The responses are in the
+ * order of the requests either way, notifications have none.
+ */
+final class BatchHandler {
+
+    private final JsonRpcExecutor rpcExecutor;
+
+    BatchHandler(JsonRpcExecutor rpcExecutor) {
+        this.rpcExecutor = rpcExecutor;
+    }
+
+    /**
+     * @param executor runs the requests of the batch, <code>null</code> to
+     *                 run them on the calling thread
+     * @param await    whether pending results are waited for, otherwise the
+     *                 responses may still be pending
+     */
+    List<JsonRpcResponse> handle(JsonArray batch, Executor executor, final boolean await,
+                                 final RequestMetrics requestMetrics) {
+        List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>(batch.size());
+
+        if (executor == null || batch.size() == 1) {
+            for (JsonElement req : batch) {
+                JsonRpcResponse resp = rpcExecutor.handle(req, requestMetrics);
+                if (!JsonRpcExecutor.isNotification(req)) {
+                    responses.add(await ? rpcExecutor.await(resp, requestMetrics) : resp);
+                }
+            }
+            return responses;
+        }
+
+        List<FutureTask<JsonRpcResponse>> tasks = new ArrayList<FutureTask<JsonRpcResponse>>(batch.size());
+        for (final JsonElement req : batch) {
+            FutureTask<JsonRpcResponse> task = new FutureTask<JsonRpcResponse>(new Callable<JsonRpcResponse>() {
+                public JsonRpcResponse call() throws Exception {
+                    JsonRpcResponse resp = rpcExecutor.handle(req, requestMetrics);
+                    return (await ? rpcExecutor.await(resp, requestMetrics) : resp);
+                }
+            });
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            tasks.add(task);
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            JsonRpcResponse resp;
+            try {
+                resp = getUninterruptibly(tasks.get(i));
+            } catch (ExecutionException e) {
+                // handle() maps every failure to an error response
+                throw new JsonRpcException("unable to execute batch", e.getCause());
+            }
+            if (!JsonRpcExecutor.isNotification(batch.get(i))) {
+                responses.add(resp);
+            }
+        }
+        return responses;
+    }
+
+    private static <V> V getUninterruptibly(FutureTask<V> task) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import org.json.rpc.commons.JsonRpcCompression;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Response body which is compressed once it grows past the threshold. Up
+ * to that it is held back, so a small body can still go out as it is, with
+ * a Content-Length. Past it, the body streams through the compressor
+ * without being buffered. The held back data is buffered in a buffer grown
+ * as needed, so small responses don't pay for a large threshold.
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final HttpServletResponse resp;
+    private final String coding;
+    private final int threshold;
+
+    private byte[] buff;
+    private int count;
+    private OutputStream out;
+
+    CompressingOutputStream(HttpServletResponse resp, String coding, int threshold) {
+        this.resp = resp;
+        this.coding = coding;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out != null) {
+            out.write(b);
+        } else if (count + 1 < threshold) {
+            ensureCapacity(count + 1);
+            buff[count++] = (byte) b;
+        } else {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null) {
+            if (count + len < threshold) {
+                ensureCapacity(count + len);
+                System.arraycopy(b, off, buff, count, len);
+                count += len;
+                return;
+            }
+            resp.setHeader("Content-Encoding", coding);
+            out = JsonRpcCompression.compress(resp.getOutputStream(), coding);
+            if (count > 0) {
+                out.write(buff, 0, count);
+            }
+            buff = null;
+        }
+        out.write(b, off, len);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buff == null) {
+            buff = new byte[Math.min(Math.max(capacity, INITIAL_BUFFER_SIZE), threshold)];
+        } else if (capacity > buff.length) {
+            buff = Arrays.copyOf(buff, Math.min(Math.max(capacity, buff.length * 2), threshold));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // held back data is only written once it is clear whether to compress it
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            resp.setContentLength(count);
+            out = resp.getOutputStream();
+            if (count > 0) {
+                out.write(buff, 0, count);
+            }
+            buff = null;
+        }
+        out.close();
+    }
+}
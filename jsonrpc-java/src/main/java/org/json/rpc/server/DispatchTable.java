@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.json.rpc.commons.JsonRpcCacheable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup table of all exported methods, keyed by the full
+ * <code>handle.method</code> name and indexed by arity. Overloads of the
+ * same arity are told apart by an {@link OverloadResolver}, by-name params
+ * by one over the overloads of all arities.
+ * <p>
+ * It is built once when the executor gets locked, so that resolving a
+ * method on the request path is a single hash lookup.
+ */
+final class DispatchTable {
+
+    private static final OverloadResolver[] EMPTY = new OverloadResolver[0];
+
+    private final Map<String, OverloadResolver[]> entries;
+    private final Map<String, OverloadResolver> byName;
+
+    /**
+     * @param resultCaches caches configured by name, they take precedence
+     *                     over {@link JsonRpcCacheable} annotations
+     */
+    DispatchTable(Map<String, HandleEntry<?>> handlers, InvocationEngine engine, Gson gson,
+                  Map<String, ResultCache> resultCaches) {
+        Map<String, List<List<MethodEntry>>> overloads = new HashMap<String, List<List<MethodEntry>>>();
+
+        for (Map.Entry<String, HandleEntry<?>> e : handlers.entrySet()) {
+            HandleEntry<?> handleEntry = e.getValue();
+            for (Method m : handleEntry.getMethods()) {
+                String name = e.getKey() + "." + m.getName();
+                int arity = m.getParameterTypes().length;
+
+                List<List<MethodEntry>> byArity = overloads.get(name);
+                if (byArity == null) {
+                    byArity = new ArrayList<List<MethodEntry>>();
+                    overloads.put(name, byArity);
+                }
+                while (byArity.size() <= arity) {
+                    byArity.add(null);
+                }
+                List<MethodEntry> candidates = byArity.get(arity);
+                if (candidates == null) {
+                    candidates = new ArrayList<MethodEntry>();
+                    byArity.set(arity, candidates);
+                }
+                candidates.add(new MethodEntry(name, handleEntry, m, engine, gson,
+                        getResultCache(name, m, resultCaches)));
+            }
+        }
+
+        Map<String, OverloadResolver[]> map = new HashMap<String, OverloadResolver[]>();
+        Map<String, OverloadResolver> named = new HashMap<String, OverloadResolver>();
+        for (Map.Entry<String, List<List<MethodEntry>>> e : overloads.entrySet()) {
+            List<List<MethodEntry>> byArity = e.getValue();
+            OverloadResolver[] arr = (byArity.isEmpty() ? EMPTY : new OverloadResolver[byArity.size()]);
+            // callable by name, ties go to the fewest parameters
+            List<MethodEntry> candidates = new ArrayList<MethodEntry>();
+            for (int arity = 0; arity < arr.length; arity++) {
+                if (byArity.get(arity) != null) {
+                    arr[arity] = OverloadResolver.of(byArity.get(arity));
+                    candidates.addAll(arr[arity].getCandidates());
+                }
+            }
+            map.put(e.getKey(), arr);
+            if (!candidates.isEmpty()) {
+                named.put(e.getKey(), OverloadResolver.byName(candidates));
+            }
+        }
+
+        this.entries = map;
+        this.byName = named;
+    }
+
+    private static ResultCache getResultCache(String name, Method m, Map<String, ResultCache> resultCaches) {
+        ResultCache resultCache = resultCaches.get(name);
+        if (resultCache != null) {
+            return resultCache;
+        }
+
+        JsonRpcCacheable cacheable = m.getAnnotation(JsonRpcCacheable.class);
+        return (cacheable != null ? ResultCache.of(cacheable) : null);
+    }
+
+    public boolean contains(String methodName) {
+        return entries.containsKey(methodName);
+    }
+
+    public boolean contains(String methodName, int arity) {
+        OverloadResolver[] byArity = entries.get(methodName);
+        return (byArity != null && arity < byArity.length && byArity[arity] != null);
+    }
+
+    /**
+     * @param params by-position or by-name params
+     */
+    public MethodEntry lookup(String methodName, JsonElement params) {
+        if (!params.isJsonObject()) {
+            return lookup(methodName, params.getAsJsonArray());
+        }
+
+        OverloadResolver resolver = byName.get(methodName);
+        return (resolver != null ? resolver.resolve(params.getAsJsonObject()) : null);
+    }
+
+    public MethodEntry lookup(String methodName, JsonArray params) {
+        OverloadResolver[] byArity = entries.get(methodName);
+        int arity = params.size();
+        if (byArity == null || arity >= byArity.length || byArity[arity] == null) {
+            return null;
+        }
+        return byArity[arity].resolve(params);
+    }
+}
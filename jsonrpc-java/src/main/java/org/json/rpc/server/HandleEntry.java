@@ -16,9 +16,12 @@
 
 package org.json.rpc.server;
 
+import org.json.rpc.commons.JsonRpcParam;
 import org.json.rpc.commons.TypeChecker;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -33,6 +36,7 @@ class HandleEntry<T> {
     private final T handler;
     private final Map<String, String[]> signatures;
     private final Set<Method> methods;
+    private final Map<Method, String[]> parameterNames;
 
     public HandleEntry(TypeChecker typeChecker, T handler, Class<T>... classes) {
         if (handler == null) {
@@ -48,6 +52,7 @@ class HandleEntry<T> {
 
         Map<String, List<String>> map = new HashMap<String, List<String>>();
         Set<Method> set = new HashSet<Method>();
+        Map<Method, String[]> names = new HashMap<Method, String[]>();
 
         for (Class<?> clazz : classes) {
             typeChecker.isValidInterface(clazz, true);
@@ -58,6 +63,7 @@ class HandleEntry<T> {
             }
 
             for (Method m : clazz.getMethods()) {
+                names.put(m, readParameterNames(m));
                 set.add(m);
                 Class<?>[] params = m.getParameterTypes();
 
@@ -65,8 +71,9 @@ class HandleEntry<T> {
                 if (list == null) {
                     list = new ArrayList<String>();
                 }
-                StringBuffer buff = new StringBuffer(typeChecker.getTypeName(m
-                        .getReturnType()));
+                Type resultType = TypeChecker.getResultType(m);
+                StringBuffer buff = new StringBuffer(typeChecker.getTypeName(
+                        resultType instanceof Class ? (Class<?>) resultType : Object.class));
                 for (int i = 0; i < params.length; i++) {
                     buff.append(",").append(typeChecker.getTypeName(params[i]));
                 }
@@ -84,6 +91,37 @@ class HandleEntry<T> {
 
         this.methods = Collections.unmodifiableSet(set);
         this.signatures = Collections.unmodifiableMap(signs);
+        this.parameterNames = names;
+    }
+
+    /**
+     * @return the names by-name params are bound with, <code>null</code> if
+     *         some parameter is neither annotated with {@link JsonRpcParam}
+     *         nor compiled with its name
+     */
+    public String[] getParameterNames(Method m) {
+        return parameterNames.get(m);
+    }
+
+    private static String[] readParameterNames(Method m) {
+        Parameter[] params = m.getParameters();
+        String[] names = new String[params.length];
+        Set<String> seen = new HashSet<String>();
+        for (int i = 0; i < params.length; i++) {
+            JsonRpcParam param = params[i].getAnnotation(JsonRpcParam.class);
+            if (param != null) {
+                names[i] = param.value();
+            } else if (params[i].isNamePresent()) {
+                names[i] = params[i].getName();
+            } else {
+                return null;
+            }
+
+            if (!seen.add(names[i])) {
+                throw new IllegalArgumentException("duplicate parameter name '" + names[i] + "' : " + m);
+            }
+        }
+        return names;
     }
 
     public T getHandler() {
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+/**
+ * Strategy used by {@link JsonRpcExecutor} to call the exported methods.
+ *
+ * @see JsonRpcExecutor#setInvocationEngine(InvocationEngine)
+ */
+public enum InvocationEngine {
+
+    /**
+     * Core reflection, {@link java.lang.reflect.Method#invoke(Object, Object...)} on every call.
+     */
+    REFLECTIVE,
+
+    /**
+     * A {@link java.lang.invoke.MethodHandle} bound to the handler once,
+     * when the executor gets locked.
+     */
+    METHOD_HANDLE
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+/**
+ * How much of a failure is sent back to the client in an error response,
+ * see {@link JsonRpcExecutor#setErrorDetail(JsonRpcErrorDetail)}. Stack
+ * traces are only rendered when they are sent, the failure is logged in
+ * any case.
+ * <p>
+ * Errors in invalid requests, e.g. an unknown method, never carry a stack
+ * trace, and exceptions thrown as {@link org.json.rpc.commons.JsonRpcRemoteException}
+ * are passed on as they are.
+ */
+public enum JsonRpcErrorDetail {
+
+    /**
+     * Only the error code, with a generic message.
+     */
+    NONE,
+
+    /**
+     * The message of the exception, without a stack trace.
+     */
+    MESSAGE,
+
+    /**
+     * The message of the exception, and the top frames of its stack trace
+     * and those of its causes as data.
+     */
+    TRUNCATED,
+
+    /**
+     * The message of the exception, and its full stack trace as data, also
+     * repeated in the message of unexpected exceptions thrown by methods.
+     * The default.
+     */
+    FULL
+
+}
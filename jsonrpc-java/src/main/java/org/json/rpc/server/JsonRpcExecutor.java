@@ -22,6 +22,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.json.rpc.commons.GsonTypeChecker;
+import org.json.rpc.commons.JsonRpcCacheable;
+import org.json.rpc.commons.JsonRpcCodec;
 import org.json.rpc.commons.JsonRpcErrorCodes;
 import org.json.rpc.commons.JsonRpcException;
 import org.json.rpc.commons.JsonRpcRemoteException;
@@ -30,17 +32,30 @@ import org.json.rpc.commons.TypeChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,12 +67,37 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
     private static final Pattern METHOD_PATTERN = Pattern
             .compile("([_a-zA-Z][_a-zA-Z0-9]*)\\.([_a-zA-Z][_a-zA-Z0-9]*)");
 
+    private static final RequestError INVALID_REQUEST = new RequestError(
+            JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE, "unable to read request");
+    private static final RequestError INVALID_METHOD_NAME = new RequestError(
+            JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE, remoteMessage(JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE, "invalid method name"));
+    private static final RequestError METHOD_NOT_FOUND = new RequestError(
+            JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE, remoteMessage(JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE, "no such method exists"));
+    private static final RequestError INVALID_PARAMS = new RequestError(
+            JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE, "no method takes the params");
+
+    private static final String SERVER_ERROR_MESSAGE = "server error";
+
+    /**
+     * Stack frames per exception sent with {@link JsonRpcErrorDetail#TRUNCATED}.
+     */
+    private static final int TRUNCATED_FRAMES = 8;
+
     private final Map<String, HandleEntry<?>> handlers;
+    private final Map<String, ResultCache> resultCaches;
 
     private final TypeChecker typeChecker;
     private volatile boolean locked;
+    private DispatchTable dispatchTable;
+    private InvocationEngine invocationEngine = InvocationEngine.METHOD_HANDLE;
+    private volatile boolean streamResponses;
+    private volatile Executor batchExecutor;
+    private volatile JsonRpcMetrics metrics;
+    private volatile JsonRpcErrorDetail errorDetail = JsonRpcErrorDetail.FULL;
     
     private final Gson gson;
+    private final ResponseWriter responseWriter;
+    private final BatchHandler batchHandler;
 
     public JsonRpcExecutor() {
         this(new GsonTypeChecker(), new Gson());
@@ -75,7 +115,10 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
     public JsonRpcExecutor(TypeChecker typeChecker, Gson gson) {
         this.typeChecker = typeChecker;
 		this.gson = gson;
+        this.responseWriter = new ResponseWriter(gson);
+        this.batchHandler = new BatchHandler(this);
         this.handlers = new HashMap<String, HandleEntry<?>>();
+        this.resultCaches = new HashMap<String, ResultCache>();
         addHandler("system", this, RpcIntroSpection.class);
     }
 
@@ -83,6 +126,86 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
         return locked;
     }
 
+    public InvocationEngine getInvocationEngine() {
+        return invocationEngine;
+    }
+
+    /**
+     * Selects how exported methods are called, the methods are bound to the
+     * engine once when the executor gets locked. Defaults to
+     * {@link InvocationEngine#METHOD_HANDLE}.
+     */
+    public void setInvocationEngine(InvocationEngine invocationEngine) {
+        if (invocationEngine == null) {
+            throw new NullPointerException("invocationEngine");
+        }
+        if (locked) {
+            throw new JsonRpcException("executor has been locked, can't change invocation engine");
+        }
+        this.invocationEngine = invocationEngine;
+    }
+
+    public boolean isStreamResponses() {
+        return streamResponses;
+    }
+
+    /**
+     * When enabled, results are serialized straight into the response writer
+     * of a {@link JsonRpcServerStreamTransport}, instead of being rendered
+     * into a <code>String</code> first. As the length is not known upfront
+     * the transport has to send the response chunked.
+     * <p>
+     * The response is already on its way when the result is serialized, so
+     * a failure while serializing it leaves the client with a truncated
+     * response rather than an error response.
+     */
+    public void setStreamResponses(boolean streamResponses) {
+        this.streamResponses = streamResponses;
+    }
+
+    public Executor getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    /**
+     * Executor used to run the calls of a batch request in parallel, by
+     * default they run one after the other on the calling thread. The
+     * calling thread waits for the whole batch, so it should not be a
+     * thread of the same bounded pool.
+     */
+    public void setBatchExecutor(Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    public JsonRpcMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sink for per method call counts, errors, latencies and sizes, none by
+     * default. Nothing is measured while no sink is set.
+     */
+    public void setMetrics(JsonRpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public JsonRpcErrorDetail getErrorDetail() {
+        return errorDetail;
+    }
+
+    /**
+     * How much of a failure is sent to the client, by default
+     * {@link JsonRpcErrorDetail#FULL}. Rendering stack traces is what makes
+     * failing calls expensive, a public service flooded with bad calls is
+     * better off with {@link JsonRpcErrorDetail#MESSAGE} or less.
+     */
+    public void setErrorDetail(JsonRpcErrorDetail errorDetail) {
+        if (errorDetail == null) {
+            throw new NullPointerException("errorDetail");
+        }
+        this.errorDetail = errorDetail;
+    }
+
     public <T> void addHandler(String name, T handler, Class<T>... classes) {
         if (locked) {
             throw new JsonRpcException("executor has been locked, can't add more handlers");
@@ -97,118 +220,448 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
         }
     }
 
-    public void execute(JsonRpcServerTransport transport) {
+    /**
+     * Caches the results of a method, same as annotating it with
+     * {@link JsonRpcCacheable} but without touching the interface. Results
+     * are cached per params, repeated calls are answered with the serialized
+     * result without binding or invoking the method. Results of methods
+     * returning a future are not cached.
+     *
+     * @param method  full <code>handle.method</code> name, all overloads
+     *                share the cache
+     * @param maxSize maximum number of cached results, least recently used
+     *                ones are evicted first
+     * @param ttl     how long a result is cached for
+     */
+    public void setResultCache(String method, int maxSize, long ttl, TimeUnit unit) {
+        if (method == null) {
+            throw new NullPointerException("method");
+        }
+        if (locked) {
+            throw new JsonRpcException("executor has been locked, can't add result caches");
+        }
+
+        synchronized (handlers) {
+            resultCaches.put(method, new ResultCache(maxSize, ttl, unit));
+        }
+    }
+
+    private void lock() {
         if (!locked) {
             synchronized (handlers) {
-                locked = true;
+                if (!locked) {
+                    dispatchTable = new DispatchTable(handlers, invocationEngine, gson, resultCaches);
+                    locked = true;
+                }
             }
             LOG.info("locking executor to avoid modification");
         }
+    }
 
-        String methodName = null;
-        JsonArray params = null;
-
-        JsonObject resp = new JsonObject();
-        resp.addProperty("jsonrpc", "2.0");
-
-        String errorMessage = null;
-        Integer errorCode = null;
-        String errorData = null;
+    /**
+     * Executes the request on the calling thread, handler methods returning a
+     * {@link CompletionStage} are waited for. Nothing is written to the
+     * transport for notifications, i.e. valid requests without an id.
+     */
+    public void execute(JsonRpcServerTransport transport) {
+        lock();
 
-        JsonObject req = null;
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics);
+        JsonElement req;
         try {
-            String requestData = transport.readRequest();
-            LOG.debug("JSON-RPC >>  {}", requestData);
-            JsonParser parser = new JsonParser();
-            req = (JsonObject) parser.parse(new StringReader(requestData));
+            req = readRequest(transport, requestMetrics);
         } catch (Throwable t) {
-            errorCode = JsonRpcErrorCodes.PARSE_ERROR_CODE;
-            errorMessage = "unable to parse json-rpc request";
-            errorData = getStackTrace(t);
+            JsonRpcResponse resp = recordCall(requestMetrics, parseError(t));
+            responseWriter.write(transport, resp, streamResponses, requestMetrics);
+            return;
+        }
 
-            LOG.warn(errorMessage, t);
+        if (!req.isJsonArray()) {
+            JsonRpcResponse resp = await(handle(req, requestMetrics), requestMetrics);
+            if (isNotification(req)) {
+                finishUnanswered(requestMetrics, RequestMetrics.getMethodName(resp));
+                return;
+            }
+            responseWriter.write(transport, resp, streamResponses, requestMetrics);
+            return;
+        }
 
-            sendError(transport, resp, errorCode, errorMessage, errorData);
+        JsonArray batch = req.getAsJsonArray();
+        if (batch.size() == 0) {
+            JsonRpcResponse resp = recordCall(requestMetrics, emptyBatchError());
+            responseWriter.write(transport, resp, streamResponses, requestMetrics);
             return;
         }
 
+        List<JsonRpcResponse> responses = batchHandler.handle(batch, batchExecutor, true, requestMetrics);
+        if (responses.isEmpty()) {
+            // only notifications, nothing has to be returned
+            finishUnanswered(requestMetrics, JsonRpcMetrics.BATCH);
+            return;
+        }
+        responseWriter.write(transport, responses, streamResponses, requestMetrics);
+    }
 
+    /**
+     * Reads, executes and answers the request on the given executor, e.g. a
+     * worker pool or <code>Executors.newVirtualThreadPerTaskExecutor()</code>,
+     * so that the calling (container) thread is not held up.
+     * <p>
+     * Handler methods returning a {@link CompletionStage} don't hold up a
+     * worker either, the response is written by the thread completing it.
+     *
+     * @return completes once the response has been written
+     */
+    public CompletableFuture<Void> executeAsync(final JsonRpcServerTransport transport, Executor executor) {
+        lock();
+
+        final CompletableFuture<Void> done = new CompletableFuture<Void>();
         try {
-            assert req != null;
-            resp.add("id", req.get("id"));
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        executeAsync(transport, done);
+                    } catch (Throwable t) {
+                        done.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
 
-            methodName = req.getAsJsonPrimitive("method").getAsString();
-            params = (JsonArray) req.get("params");
-            if (params == null) {
-                params = new JsonArray();
-            }
+    private void executeAsync(final JsonRpcServerTransport transport, final CompletableFuture<Void> done) {
+        final RequestMetrics requestMetrics = RequestMetrics.start(metrics);
+        JsonElement req;
+        try {
+            req = readRequest(transport, requestMetrics);
         } catch (Throwable t) {
-            errorCode = JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE;
-            errorMessage = "unable to read request";
-            errorData = getStackTrace(t);
+            JsonRpcResponse resp = recordCall(requestMetrics, parseError(t));
+            responseWriter.write(transport, resp, streamResponses, requestMetrics);
+            done.complete(null);
+            return;
+        }
 
+        if (!req.isJsonArray()) {
+            final boolean notification = isNotification(req);
+            resolve(handle(req, requestMetrics), requestMetrics).thenAccept(new Consumer<JsonRpcResponse>() {
+                public void accept(JsonRpcResponse resp) {
+                    if (notification) {
+                        finishUnanswered(requestMetrics, RequestMetrics.getMethodName(resp));
+                    } else {
+                        responseWriter.write(transport, resp, streamResponses, requestMetrics);
+                    }
+                    done.complete(null);
+                }
+            });
+            return;
+        }
 
-            LOG.warn(errorMessage, t);
-            sendError(transport, resp, errorCode, errorMessage, errorData);
+        JsonArray batch = req.getAsJsonArray();
+        if (batch.size() == 0) {
+            JsonRpcResponse resp = recordCall(requestMetrics, emptyBatchError());
+            responseWriter.write(transport, resp, streamResponses, requestMetrics);
+            done.complete(null);
             return;
         }
 
+        final List<JsonRpcResponse> responses = batchHandler.handle(batch, batchExecutor, false, requestMetrics);
+        if (responses.isEmpty()) {
+            finishUnanswered(requestMetrics, JsonRpcMetrics.BATCH);
+            done.complete(null);
+            return;
+        }
+
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[responses.size()];
+        for (int i = 0; i < futures.length; i++) {
+            final int index = i;
+            futures[i] = resolve(responses.get(i), requestMetrics).thenAccept(new Consumer<JsonRpcResponse>() {
+                public void accept(JsonRpcResponse resp) {
+                    responses.set(index, resp);
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).thenRun(new Runnable() {
+            public void run() {
+                responseWriter.write(transport, responses, streamResponses, requestMetrics);
+                done.complete(null);
+            }
+        });
+    }
+
+    private JsonRpcResponse parseError(Throwable t) {
+        String errorMessage = "unable to parse json-rpc request";
+        LOG.warn(errorMessage, t);
+
+        return JsonRpcResponse.error(null, JsonRpcErrorCodes.PARSE_ERROR_CODE, errorMessage, getErrorData(t));
+    }
+
+    private JsonRpcResponse emptyBatchError() {
+        return JsonRpcResponse.error(null, JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE, "empty batch", null);
+    }
+
+    /**
+     * A valid JSON-RPC 2.0 request without an id, it is executed but never
+     * answered. Invalid requests are always answered, with a <code>null</code>
+     * id if they have none.
+     */
+    static boolean isNotification(JsonElement request) {
+        if (!request.isJsonObject()) {
+            return false;
+        }
+        JsonObject req = request.getAsJsonObject();
+        JsonElement version = req.get("jsonrpc");
+        JsonElement params = req.get("params");
+        return !req.has("id")
+                && isString(version) && "2.0".equals(version.getAsString())
+                && isString(req.get("method"))
+                && (params == null || params.isJsonArray() || params.isJsonObject());
+    }
+
+    private static boolean isString(JsonElement e) {
+        return e != null && e.isJsonPrimitive() && e.getAsJsonPrimitive().isString();
+    }
+
+    JsonRpcResponse handle(JsonElement request, RequestMetrics requestMetrics) {
+        JsonObject req = (request.isJsonObject() ? request.getAsJsonObject() : null);
+        JsonElement id = (req != null ? req.get("id") : null);
+        JsonElement method = (req != null ? req.get("method") : null);
+        JsonElement paramsElement = (req != null ? req.get("params") : null);
+
+        // checked upfront, a flood of invalid requests costs no exceptions
+        if (method == null || !method.isJsonPrimitive()
+                || (paramsElement != null && !paramsElement.isJsonArray() && !paramsElement.isJsonObject())) {
+            LOG.debug("invalid request : {}", request);
+            return recordCall(requestMetrics, INVALID_REQUEST.toResponse(id));
+        }
+        String methodName = method.getAsString();
+        // by position or by name
+        JsonElement params = (paramsElement != null ? paramsElement : new JsonArray());
+
+        MethodEntry methodEntry = null;
+        JsonRpcResponse resp;
         try {
-            JsonElement result = executeMethod(methodName, params);
-            resp.add("result", result);
+            methodEntry = lookup(methodName, params);
+            resp = executeMethod(id, methodEntry, params, requestMetrics);
         } catch (Throwable t) {
+            resp = executionError(id, methodName, t);
+        }
+
+        if (resp.isPending()) {
+            // recorded once it completes
+            return resp;
+        }
+        if (methodEntry != null) {
+            resp.setMethodName(methodEntry.getName());
+        }
+        return recordCall(requestMetrics, resp);
+    }
+
+    private JsonRpcResponse executionError(JsonElement id, String methodName, Throwable t) {
+        if (t instanceof RequestError) {
+            LOG.debug("{} : {}", t.getMessage(), methodName);
+            return ((RequestError) t).toResponse(id);
+        }
+
+        int code = JsonRpcErrorCodes.getServerError(1);
+        if (t instanceof InvocationFailure) {
+            code = JsonRpcErrorCodes.getServerError(0);
+            t = t.getCause();
+        }
+        if (LOG.isWarnEnabled()) {
             LOG.warn("exception occured while executing : " + methodName, t);
-            if (t instanceof JsonRpcRemoteException) {
-                sendError(transport, resp, (JsonRpcRemoteException) t);
-                return;
+        }
+        if (t instanceof JsonRpcRemoteException) {
+            JsonRpcRemoteException e = (JsonRpcRemoteException) t;
+            return JsonRpcResponse.error(id, e.getCode(), e.getMessage(), e.getData());
+        }
+
+        JsonRpcErrorDetail errorDetail = this.errorDetail;
+        String message = (errorDetail == JsonRpcErrorDetail.NONE ? SERVER_ERROR_MESSAGE : t.getMessage());
+        String data = getErrorData(t);
+        if (errorDetail == JsonRpcErrorDetail.FULL && code == JsonRpcErrorCodes.getServerError(0)) {
+            // as it has always been sent, with the stack trace in the message too
+            message = remoteMessage(code, message, data);
+        }
+        return JsonRpcResponse.error(id, code, message, data);
+    }
+
+    /**
+     * Blocks until a pending result is available.
+     */
+    JsonRpcResponse await(JsonRpcResponse resp, RequestMetrics requestMetrics) {
+        if (!resp.isPending()) {
+            return resp;
+        }
+
+        Object result;
+        try {
+            result = resp.getPending().toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            return complete(resp, null, e.getCause(), requestMetrics);
+        } catch (Throwable t) {
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
             }
-            errorCode = JsonRpcErrorCodes.getServerError(1);
-            errorMessage = t.getMessage();
-            errorData = getStackTrace(t);
-            sendError(transport, resp, errorCode, errorMessage, errorData);
-            return;
+            return complete(resp, null, t, requestMetrics);
         }
+        return complete(resp, result, null, requestMetrics);
+    }
 
+    /**
+     * Turns a pending result into a future of its final response.
+     */
+    private CompletableFuture<JsonRpcResponse> resolve(final JsonRpcResponse resp,
+                                                       final RequestMetrics requestMetrics) {
+        if (!resp.isPending()) {
+            return CompletableFuture.completedFuture(resp);
+        }
+
+        return resp.getPending().handle(new BiFunction<Object, Throwable, JsonRpcResponse>() {
+            public JsonRpcResponse apply(Object result, Throwable t) {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    t = t.getCause();
+                }
+                return complete(resp, result, t, requestMetrics);
+            }
+        }).toCompletableFuture();
+    }
+
+    private JsonRpcResponse complete(JsonRpcResponse pending, Object result, Throwable t,
+                                     RequestMetrics requestMetrics) {
+        String methodName = pending.getMethodName();
+        if (requestMetrics != null) {
+            requestMetrics.getMetrics().recordLatency(methodName, JsonRpcMetrics.Phase.INVOKE,
+                    System.nanoTime() - pending.getInvoked());
+        }
+
+        JsonRpcResponse resp;
         try {
-            String responseData = resp.toString();
-            LOG.debug("JSON-RPC result <<  {}", responseData);
-            transport.writeResponse(responseData);
-        } catch (Exception e) {
-            LOG.warn("unable to write response : " + resp, e);
+            if (t != null) {
+                throw t;
+            }
+            resp = newResult(pending.getId(), result, methodName, requestMetrics);
+        } catch (Throwable e) {
+            if (!(e instanceof JsonRpcRemoteException)) {
+                e = new InvocationFailure(e);
+            }
+            resp = executionError(pending.getId(), methodName, e);
         }
+        resp.setMethodName(methodName);
+        return recordCall(requestMetrics, resp);
     }
 
-    private void sendError(JsonRpcServerTransport transport, JsonObject resp, JsonRpcRemoteException e) {
-        sendError(transport, resp, e.getCode(), e.getMessage(), e.getData());
+    private JsonRpcResponse newResult(JsonElement id, Object result, String methodName,
+                                      RequestMetrics requestMetrics) {
+        JsonRpcResponse resp = JsonRpcResponse.result(id, result);
+        if (!streamResponses) {
+            if (requestMetrics == null) {
+                resp.serializeResult(gson);
+            } else {
+                long start = System.nanoTime();
+                resp.serializeResult(gson);
+                requestMetrics.getMetrics().recordLatency(methodName, JsonRpcMetrics.Phase.SERIALIZE,
+                        System.nanoTime() - start);
+            }
+        }
+        return resp;
     }
 
-    private void sendError(JsonRpcServerTransport transport, JsonObject resp, Integer code, String message, String data) {
-        JsonObject error = new JsonObject();
-        if (code != null) {
-            error.addProperty("code", code);
+    /**
+     * Records the outcome of a call which has been answered.
+     */
+    private static JsonRpcResponse recordCall(RequestMetrics requestMetrics, JsonRpcResponse resp) {
+        if (requestMetrics != null) {
+            JsonRpcMetrics metrics = requestMetrics.getMetrics();
+            String methodName = RequestMetrics.getMethodName(resp);
+            metrics.recordCall(methodName);
+            if (resp.isError()) {
+                metrics.recordError(methodName, resp.getErrorCode());
+            }
         }
+        return resp;
+    }
 
-        if (message != null) {
-            error.addProperty("message", message);
+    private static void finishUnanswered(RequestMetrics requestMetrics, String methodName) {
+        if (requestMetrics != null) {
+            requestMetrics.finish(methodName, -1L, 0L);
         }
+    }
 
-        if (data != null) {
-            error.addProperty("data", data);
+    private JsonElement readRequest(JsonRpcServerTransport transport, RequestMetrics requestMetrics) throws Exception {
+        if (transport instanceof JsonRpcServerCodecTransport) {
+            JsonRpcCodec codec = ((JsonRpcServerCodecTransport) transport).getRequestCodec();
+            if (codec != null) {
+                return readRequest((JsonRpcServerCodecTransport) transport, codec, requestMetrics);
+            }
         }
 
-        resp.add("error", error);
-        resp.remove("result");
-        String responseData = resp.toString();
+        JsonParser parser = new JsonParser();
 
-        LOG.debug("JSON-RPC error <<  {}", responseData);
+        if (!(transport instanceof JsonRpcServerStreamTransport)) {
+            String requestData = transport.readRequest();
+            LOG.debug("JSON-RPC >>  {}", requestData);
+            JsonElement req = parser.parse(new StringReader(requestData));
+            if (requestMetrics != null) {
+                requestMetrics.parsed(RequestMetrics.utf8Length(requestData));
+            }
+            return req;
+        }
+
+        Reader in = ((JsonRpcServerStreamTransport) transport).getRequestReader();
+        RequestMetrics.CountingReader counter = null;
+        if (requestMetrics != null) {
+            in = counter = new RequestMetrics.CountingReader(in);
+        }
         try {
-            transport.writeResponse(responseData);
-        } catch (Exception e) {
-            LOG.error("unable to write error response : " + responseData, e);
+            JsonElement req = parser.parse(in);
+            LOG.debug("JSON-RPC >>  {}", req);
+            if (counter != null) {
+                requestMetrics.parsed(counter.count);
+            }
+            return req;
+        } finally {
+            in.close();
         }
     }
 
-    private String getStackTrace(Throwable t) {
+    private JsonElement readRequest(JsonRpcServerCodecTransport transport, JsonRpcCodec codec,
+                                    RequestMetrics requestMetrics) throws Exception {
+        InputStream in = transport.getRequestStream();
+        RequestMetrics.CountingInputStream counter = null;
+        if (requestMetrics != null) {
+            in = counter = new RequestMetrics.CountingInputStream(in);
+        }
+        try {
+            JsonElement req = codec.decode(in);
+            LOG.debug("JSON-RPC {} >>  {}", codec.getContentType(), req);
+            if (counter != null) {
+                requestMetrics.parsed(counter.count);
+            }
+            return req;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the stack trace as much as the error detail asks for,
+     *         <code>null</code> if none
+     */
+    private String getErrorData(Throwable t) {
+        switch (errorDetail) {
+            case FULL:
+                return getStackTrace(t);
+            case TRUNCATED:
+                return getStackTrace(t, TRUNCATED_FRAMES);
+            default:
+                return null;
+        }
+    }
+
+    private static String getStackTrace(Throwable t) {
         StringWriter str = new StringWriter();
         PrintWriter w = new PrintWriter(str);
         t.printStackTrace(w);
@@ -216,58 +669,130 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
         return str.toString();
     }
 
-    private JsonElement executeMethod(String methodName, JsonArray params) throws Throwable {
-        try {
-            Matcher mat = METHOD_PATTERN.matcher(methodName);
-            if (!mat.find()) {
-                throw new JsonRpcRemoteException(JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE, "invalid method name", null);
+    /**
+     * Like {@link Throwable#printStackTrace()}, with at most
+     * <code>maxFrames</code> frames of each exception in the cause chain.
+     */
+    private static String getStackTrace(Throwable t, int maxFrames) {
+        StringBuilder str = new StringBuilder();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        for (Throwable e = t; e != null && seen.add(e); e = e.getCause()) {
+            if (e != t) {
+                str.append("Caused by: ");
             }
+            str.append(e).append('\n');
 
-            String handleName = mat.group(1);
-            methodName = mat.group(2);
-
-            HandleEntry<?> handleEntry = handlers.get(handleName);
-            if (handleEntry == null) {
-                throw new JsonRpcRemoteException(JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE, "no such method exists", null);
+            StackTraceElement[] frames = e.getStackTrace();
+            int n = Math.min(frames.length, maxFrames);
+            for (int i = 0; i < n; i++) {
+                str.append("\tat ").append(frames[i]).append('\n');
             }
+            if (frames.length > n) {
+                str.append("\t... ").append(frames.length - n).append(" more\n");
+            }
+        }
+        return str.toString();
+    }
 
-            Method executableMethod = null;
-            for (Method m : handleEntry.getMethods()) {
-                if (!m.getName().equals(methodName)) {
-                    continue;
-                }
+    /**
+     * The message of a {@link JsonRpcRemoteException}, which is what clients
+     * have always been sent for these errors.
+     */
+    private static String remoteMessage(int code, String message) {
+        return remoteMessage(code, message, null);
+    }
+
+    private static String remoteMessage(int code, String message, String data) {
+        return new JsonRpcRemoteException(code, message, data).getMessage();
+    }
 
-                if (canExecute(m, params)) {
-                    executableMethod = m;
-                    break;
+    private JsonRpcResponse executeMethod(JsonElement id, MethodEntry methodEntry, JsonElement params,
+                                          RequestMetrics requestMetrics) throws Throwable {
+        JsonRpcMetrics metrics = (requestMetrics != null ? requestMetrics.getMetrics() : null);
+        String methodName = methodEntry.getName();
+        try {
+            ResultCache resultCache = methodEntry.getResultCache();
+            String cacheKey = null;
+            if (resultCache != null) {
+                // the parsed tree renders the params without insignificant whitespace
+                cacheKey = params.toString();
+                String resultJson = resultCache.get(cacheKey);
+                if (resultJson != null) {
+                    return JsonRpcResponse.serialized(id, resultJson);
                 }
             }
 
-            if (executableMethod == null) {
-                throw new JsonRpcRemoteException(JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE, "no such method exists", null);
+            long start = (metrics != null ? System.nanoTime() : 0L);
+            Object[] args = methodEntry.getParameters(params);
+            long invoked = (metrics != null ? System.nanoTime() : 0L);
+            if (metrics != null) {
+                metrics.recordLatency(methodName, JsonRpcMetrics.Phase.BIND, invoked - start);
             }
 
-            Object result = executableMethod.invoke(
-                    handleEntry.getHandler(), getParameters(executableMethod, params));
+            Object result = methodEntry.invoke(args);
+            if (result instanceof CompletionStage) {
+                return JsonRpcResponse.pending(id, methodName, (CompletionStage<?>) result, invoked);
+            }
+            if (result instanceof Future) {
+                try {
+                    result = ((Future<?>) result).get();
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+            if (metrics != null) {
+                metrics.recordLatency(methodName, JsonRpcMetrics.Phase.INVOKE, System.nanoTime() - invoked);
+            }
 
-            return gson.toJsonTree(result);
-        } catch (Throwable t) {
-            if (t instanceof InvocationTargetException) {
-                t = ((InvocationTargetException) t).getTargetException();
+            JsonRpcResponse resp = newResult(id, result, methodName, requestMetrics);
+            if (resultCache != null) {
+                // cached results are serialized right away, even when streaming
+                resp.serializeResult(gson);
+                resultCache.put(cacheKey, resp.getResultJson());
             }
+            return resp;
+        } catch (Throwable t) {
             if (t instanceof JsonRpcRemoteException) {
                 throw (JsonRpcRemoteException) t;
             }
-            throw new JsonRpcRemoteException(JsonRpcErrorCodes.getServerError(0), t.getMessage(), getStackTrace(t));
+            throw new InvocationFailure(t);
         }
     }
 
-    public boolean canExecute(Method method, JsonArray params) {
-        if (method.getParameterTypes().length != params.size()) {
-            return false;
+    private MethodEntry lookup(String methodName, JsonElement params) {
+        MethodEntry methodEntry = dispatchTable.lookup(methodName, params);
+        return (methodEntry != null ? methodEntry : lookupLenient(methodName, params));
+    }
+
+    /**
+     * Slow path for names which are not an exact match in the dispatch table,
+     * or params no method takes. Only taken for failing calls.
+     */
+    private MethodEntry lookupLenient(String methodName, JsonElement params) {
+        if (!dispatchTable.contains(methodName)) {
+            Matcher mat = METHOD_PATTERN.matcher(methodName);
+            if (!mat.find()) {
+                throw INVALID_METHOD_NAME;
+            }
+
+            methodName = mat.group(1) + "." + mat.group(2);
+            MethodEntry methodEntry = dispatchTable.lookup(methodName, params);
+            if (methodEntry != null) {
+                return methodEntry;
+            }
         }
+        // positional params select the method by arity, then by their types
+        boolean known = (params.isJsonObject() ? dispatchTable.contains(methodName)
+                : dispatchTable.contains(methodName, params.getAsJsonArray().size()));
+        throw (known ? INVALID_PARAMS : METHOD_NOT_FOUND);
+    }
 
-        return true;
+    /**
+     * Whether the number of params matches the method, their types are only
+     * checked when a call is dispatched.
+     */
+    public boolean canExecute(Method method, JsonArray params) {
+        return method.getParameterTypes().length == params.size();
     }
 
     public Object[] getParameters(Method method, JsonArray params) {
@@ -275,7 +800,7 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
         Class<?>[] types = method.getParameterTypes();
         for (int i = 0; i < types.length; i++) {
             JsonElement p = params.get(i);
-            Object o = gson.fromJson(p.toString(), types[i]);
+            Object o = gson.fromJson(p, types[i]);
             list.add(o);
         }
         return list.toArray();
@@ -336,5 +861,33 @@ public final class JsonRpcExecutor implements RpcIntroSpection {
         return signatures.toArray(arr);
     }
 
+    /**
+     * An invalid request, thrown preallocated and without a stack trace as
+     * it is not a failure of the server.
+     */
+    private static final class RequestError extends JsonRpcException {
+
+        private final int code;
 
+        RequestError(int code, String message) {
+            super(message, null, false);
+            this.code = code;
+        }
+
+        JsonRpcResponse toResponse(JsonElement id) {
+            return JsonRpcResponse.error(id, code, getMessage(), null);
+        }
+    }
+
+    /**
+     * Carries an exception thrown by a method, or by serializing its result,
+     * to where the error response is built. Its own stack trace is of no
+     * interest.
+     */
+    private static final class InvocationFailure extends JsonRpcException {
+
+        InvocationFailure(Throwable cause) {
+            super(cause.getMessage(), cause, false);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+/**
+ * Receives the metrics of a {@link JsonRpcExecutor}, see
+ * {@link JsonRpcExecutor#setMetrics(JsonRpcMetrics)}. Implementations are
+ * called on the request path from many threads, so they have to be thread
+ * safe and cheap.
+ * <p>
+ * Metrics are recorded per full <code>handle.method</code> name of the
+ * exported method. Requests which can't be resolved to one are recorded as
+ * {@link #UNKNOWN_METHOD} and the request level metrics of a batch as
+ * {@link #BATCH}, so the set of names stays bounded whatever clients send.
+ *
+ * @see MicrometerJsonRpcMetrics
+ */
+public interface JsonRpcMetrics {
+
+    String UNKNOWN_METHOD = "unknown";
+
+    String BATCH = "batch";
+
+    enum Phase {
+        /**
+         * Reading and parsing the request.
+         */
+        PARSE,
+        /**
+         * Binding the params to the argument types.
+         */
+        BIND,
+        /**
+         * Executing the method, until its future completes for asynchronous
+         * methods.
+         */
+        INVOKE,
+        /**
+         * Serializing the result, part of {@link #WRITE} when responses are
+         * streamed.
+         */
+        SERIALIZE,
+        /**
+         * Writing the response to the transport.
+         */
+        WRITE
+    }
+
+    /**
+     * Called once for every call, including the failed ones.
+     */
+    void recordCall(String method);
+
+    /**
+     * Called for every call answered with an error.
+     *
+     * @param errorCode the JSON-RPC error code, see
+     *                  {@link org.json.rpc.commons.JsonRpcErrorCodes},
+     *                  <code>null</code> if the error has none
+     */
+    void recordError(String method, Integer errorCode);
+
+    void recordLatency(String method, Phase phase, long nanos);
+
+    /**
+     * @param size size of the request in bytes, JSON text is counted as
+     *             encoded in UTF-8
+     */
+    void recordRequestSize(String method, long size);
+
+    /**
+     * @param size size of the response in bytes, JSON text is counted as
+     *             encoded in UTF-8
+     */
+    void recordResponseSize(String method, long size);
+
+}
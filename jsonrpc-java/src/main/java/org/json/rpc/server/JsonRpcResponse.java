@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A JSON-RPC response envelope, written by hand around a result which is
+ * either already serialized, or serialized straight into the output.
+ */
+final class JsonRpcResponse {
+
+    private final JsonElement id;
+
+    private final Object result;
+    private String resultJson;
+
+    private final JsonObject error;
+
+    private String methodName;
+    private final CompletionStage<?> pending;
+    private final long invoked;
+
+    private JsonRpcResponse(JsonElement id, Object result, JsonObject error,
+                            String methodName, CompletionStage<?> pending, long invoked) {
+        this.id = (id == null ? JsonNull.INSTANCE : id);
+        this.result = result;
+        this.error = error;
+        this.methodName = methodName;
+        this.pending = pending;
+        this.invoked = invoked;
+    }
+
+    /**
+     * A result which is not available yet, it has to be resolved into a
+     * result or error response before being written.
+     *
+     * @param invoked {@link System#nanoTime()} when the method was invoked
+     */
+    public static JsonRpcResponse pending(JsonElement id, String methodName, CompletionStage<?> result, long invoked) {
+        return new JsonRpcResponse(id, null, null, methodName, result, invoked);
+    }
+
+    public static JsonRpcResponse result(JsonElement id, Object result) {
+        return new JsonRpcResponse(id, result, null, null, null, 0L);
+    }
+
+    /**
+     * A result which has been serialized before, e.g. a cached one.
+     */
+    public static JsonRpcResponse serialized(JsonElement id, String resultJson) {
+        JsonRpcResponse resp = new JsonRpcResponse(id, null, null, null, null, 0L);
+        resp.resultJson = resultJson;
+        return resp;
+    }
+
+    public static JsonRpcResponse error(JsonElement id, Integer code, String message, String data) {
+        JsonObject error = new JsonObject();
+        if (code != null) {
+            error.addProperty("code", code);
+        }
+
+        if (message != null) {
+            error.addProperty("message", message);
+        }
+
+        if (data != null) {
+            error.addProperty("data", data);
+        }
+
+        return new JsonRpcResponse(id, null, error, null, null, 0L);
+    }
+
+    public JsonElement getId() {
+        return id;
+    }
+
+    /**
+     * The exported method the response belongs to, <code>null</code> if the
+     * request could not be resolved to one.
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public boolean isPending() {
+        return pending != null;
+    }
+
+    public CompletionStage<?> getPending() {
+        return pending;
+    }
+
+    public long getInvoked() {
+        return invoked;
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    public Integer getErrorCode() {
+        if (error == null || !error.has("code")) {
+            return null;
+        }
+        return error.get("code").getAsInt();
+    }
+
+    /**
+     * Serializes the result right away, so that serialization failures
+     * can still be reported as an error response.
+     */
+    public void serializeResult(Gson gson) {
+        if (error == null && resultJson == null) {
+            resultJson = gson.toJson(result);
+        }
+    }
+
+    public String getResultJson() {
+        return resultJson;
+    }
+
+    public void write(Gson gson, Writer out) throws IOException {
+        out.write("{\"jsonrpc\":\"2.0\",\"id\":");
+        out.write(id.toString());
+
+        if (error != null) {
+            out.write(",\"error\":");
+            out.write(error.toString());
+        } else {
+            out.write(",\"result\":");
+            if (resultJson != null) {
+                out.write(resultJson);
+            } else {
+                JsonWriter writer = new JsonWriter(out);
+                gson.toJson(result, (result == null ? Object.class : result.getClass()), writer);
+            }
+        }
+
+        out.write('}');
+    }
+
+    public static void write(Gson gson, Writer out, List<JsonRpcResponse> responses, boolean batch) throws IOException {
+        if (!batch) {
+            responses.get(0).write(gson, out);
+            return;
+        }
+
+        out.write('[');
+        for (int i = 0; i < responses.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            responses.get(i).write(gson, out);
+        }
+        out.write(']');
+    }
+
+    /**
+     * The response as a tree, for the binary codecs.
+     */
+    public JsonObject toJsonTree(Gson gson) {
+        JsonObject tree = new JsonObject();
+        tree.addProperty("jsonrpc", "2.0");
+        tree.add("id", id);
+
+        if (error != null) {
+            tree.add("error", error);
+        } else if (resultJson != null) {
+            tree.add("result", new JsonParser().parse(resultJson));
+        } else {
+            tree.add("result", gson.toJsonTree(result));
+        }
+        return tree;
+    }
+
+    public static JsonElement toJsonTree(Gson gson, List<JsonRpcResponse> responses, boolean batch) {
+        if (!batch) {
+            return responses.get(0).toJsonTree(gson);
+        }
+
+        JsonArray tree = new JsonArray();
+        for (JsonRpcResponse resp : responses) {
+            tree.add(resp.toJsonTree(gson));
+        }
+        return tree;
+    }
+
+    public static String toString(Gson gson, List<JsonRpcResponse> responses, boolean batch) {
+        StringWriter out = new StringWriter();
+        try {
+            write(gson, out, responses, batch);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "JsonRpcResponse[id=" + id + (error != null ? ", error=" + error : "") + "]";
+    }
+}
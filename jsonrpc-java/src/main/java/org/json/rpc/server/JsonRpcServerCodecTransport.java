@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import org.json.rpc.commons.JsonRpcCodec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link JsonRpcServerTransport} which can carry messages in a binary
+ * {@link JsonRpcCodec} encoding, negotiated per request. When no codec is
+ * named, the request and response go through the JSON text methods.
+ */
+public interface JsonRpcServerCodecTransport extends JsonRpcServerTransport {
+
+    /**
+     * @return the encoding of the request body, <code>null</code> if it is
+     *         JSON text
+     */
+    JsonRpcCodec getRequestCodec();
+
+    /**
+     * The executor closes the stream once the request has been decoded.
+     */
+    InputStream getRequestStream() throws Exception;
+
+    /**
+     * @return the encoding the response is to be written in,
+     *         <code>null</code> for JSON text
+     */
+    JsonRpcCodec getResponseCodec();
+
+    /**
+     * The executor closes the stream once the response has been encoded.
+     */
+    OutputStream getResponseStream() throws Exception;
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A {@link JsonRpcServerTransport} which hands the request and response
+ * bodies over as streams, {@link JsonRpcExecutor} parses the request
+ * straight from the reader instead of buffering the whole request into a
+ * <code>String</code> first.
+ * <p>
+ * {@link #readRequest()} and {@link #writeResponse(String)} are still needed
+ * for callers of the <code>String</code> based API.
+ */
+public interface JsonRpcServerStreamTransport extends JsonRpcServerTransport {
+
+    /**
+     * The executor closes the reader once the request has been parsed.
+     */
+    Reader getRequestReader() throws Exception;
+
+    /**
+     * Used when the executor streams responses, see
+     * {@link JsonRpcExecutor#setStreamResponses(boolean)}. The length of the
+     * response is not known when this is called. The executor closes the
+     * writer once the response has been written.
+     */
+    Writer getResponseWriter() throws Exception;
+
+}
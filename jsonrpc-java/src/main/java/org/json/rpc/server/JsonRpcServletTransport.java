@@ -16,29 +16,169 @@
 
 package org.json.rpc.server;
 
+import org.json.rpc.commons.JsonRpcCodec;
+import org.json.rpc.commons.JsonRpcCodecs;
+import org.json.rpc.commons.JsonRpcCompression;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 
-public class JsonRpcServletTransport implements JsonRpcServerTransport {
+/**
+ * Besides JSON text, requests and responses can be encoded with any of the
+ * given codecs (by default those of {@link JsonRpcCodecs#defaults()}). The
+ * request is decoded according to its <code>Content-Type</code>, the
+ * response is encoded as asked for by the <code>Accept</code> header, or
+ * like the request if that names no known encoding.
+ * <p>
+ * Request bodies compressed with <code>gzip</code> or <code>deflate</code>
+ * are decompressed as they are read, other codings are answered with
+ * <code>415</code>. Responses past the compression threshold are
+ * compressed as they are written, with the coding negotiated through the
+ * <code>Accept-Encoding</code> header.
+ */
+public class JsonRpcServletTransport implements JsonRpcServerStreamTransport, JsonRpcServerCodecTransport {
 
     private static final int BUFF_LENGTH = 1024;
 
+    // RFC 4627, JSON text is encoded in UTF-8 by default
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
     private final HttpServletRequest req;
     private final HttpServletResponse resp;
-
+    private final List<JsonRpcCodec> codecs;
+    private int compressionThreshold = JsonRpcCompression.DEFAULT_THRESHOLD;
 
     public JsonRpcServletTransport(HttpServletRequest req, HttpServletResponse resp) {
+        this(req, resp, JsonRpcCodecs.defaults());
+    }
+
+    /**
+     * @param codecs the binary encodings supported, empty for JSON text only
+     */
+    public JsonRpcServletTransport(HttpServletRequest req, HttpServletResponse resp, List<JsonRpcCodec> codecs) {
+        if (codecs == null) {
+            throw new NullPointerException("codecs");
+        }
         this.req = req;
         this.resp = resp;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Puts the request into asynchronous mode and executes it on the given
+     * executor, the container thread returns right away. The servlet (and
+     * its filters) have to be marked with <code>asyncSupported</code>.
+     * <pre>
+     * protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+     *     JsonRpcServletTransport.executeAsync(executor, req, resp, workers);
+     * }
+     * </pre>
+     *
+     * @see JsonRpcExecutor#executeAsync(JsonRpcServerTransport, Executor)
+     */
+    public static CompletableFuture<Void> executeAsync(JsonRpcExecutor executor,
+                                                       HttpServletRequest req, final HttpServletResponse resp,
+                                                       Executor workers) {
+        final AsyncContext ctx = req.startAsync(req, resp);
+        CompletableFuture<Void> done = executor.executeAsync(new JsonRpcServletTransport(req, resp), workers);
+        done.whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void v, Throwable t) {
+                if (t != null && !resp.isCommitted()) {
+                    // e.g. the executor rejected the request
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                }
+                ctx.complete();
+            }
+        });
+        return done;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Responses smaller than this many bytes are not compressed,
+     * {@link JsonRpcCompression#DEFAULT_THRESHOLD} by default. A negative
+     * value turns response compression off.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    private InputStream getRequestBody() throws IOException {
+        String contentEncoding = req.getHeader("Content-Encoding");
+        if (!JsonRpcCompression.isSupported(contentEncoding)) {
+            resp.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            throw new IOException("unsupported content encoding : " + contentEncoding);
+        }
+        return JsonRpcCompression.decompress(req.getInputStream(), contentEncoding);
+    }
+
+    /**
+     * @return <code>null</code> if the response is not to be compressed
+     */
+    private String getResponseCoding() {
+        if (compressionThreshold < 0) {
+            return null;
+        }
+        resp.addHeader("Vary", "Accept-Encoding");
+        return JsonRpcCompression.negotiate(req.getHeader("Accept-Encoding"));
+    }
+
+    private OutputStream getResponseBody() throws IOException {
+        String coding = getResponseCoding();
+        if (coding == null) {
+            return resp.getOutputStream();
+        }
+        return new CompressingOutputStream(resp, coding, compressionThreshold);
+    }
+
+    public JsonRpcCodec getRequestCodec() {
+        return JsonRpcCodecs.forContentType(codecs, req.getContentType());
+    }
+
+    public InputStream getRequestStream() throws Exception {
+        return new BufferedInputStream(getRequestBody());
+    }
+
+    public JsonRpcCodec getResponseCodec() {
+        return JsonRpcCodecs.negotiate(codecs, req.getHeader("Accept"), getRequestCodec());
+    }
+
+    /**
+     * No Content-Length is set, so the container falls back to chunked
+     * transfer encoding. Only a response held back below the compression
+     * threshold gets one.
+     */
+    public OutputStream getResponseStream() throws Exception {
+        resp.setContentType(getResponseCodec().getContentType());
+        return getResponseBody();
+    }
+
+    public Reader getRequestReader() throws Exception {
+        return new InputStreamReader(getRequestBody(), getRequestCharset());
     }
 
     public String readRequest() throws Exception {
         InputStream in = null;
         try {
-            in = req.getInputStream();
+            in = getRequestBody();
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
             byte[] buff = new byte[BUFF_LENGTH];
@@ -47,7 +187,7 @@ public class JsonRpcServletTransport implements JsonRpcServerTransport {
                 bos.write(buff, 0, n);
             }
 
-            return bos.toString();
+            return bos.toString(getRequestCharset());
         } finally {
             if (in != null) {
                 in.close();
@@ -55,9 +195,42 @@ public class JsonRpcServletTransport implements JsonRpcServerTransport {
         }
     }
 
+    private String getRequestCharset() {
+        String charset = req.getCharacterEncoding();
+        return (charset == null ? DEFAULT_CHARSET : charset);
+    }
+
+    /**
+     * No Content-Length is set, so the container falls back to chunked
+     * transfer encoding. Only a response held back below the compression
+     * threshold gets one.
+     */
+    public Writer getResponseWriter() throws Exception {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(DEFAULT_CHARSET);
+        String coding = getResponseCoding();
+        if (coding == null) {
+            return resp.getWriter();
+        }
+        return new OutputStreamWriter(new CompressingOutputStream(resp, coding, compressionThreshold), DEFAULT_CHARSET);
+    }
+
     public void writeResponse(String responseData) throws Exception {
         byte[] data = responseData.getBytes(resp.getCharacterEncoding());
         resp.addHeader("Content-Type", "application/json");
+
+        String coding = getResponseCoding();
+        if (coding != null && data.length >= compressionThreshold) {
+            resp.setHeader("Content-Encoding", coding);
+            OutputStream out = JsonRpcCompression.compress(resp.getOutputStream(), coding);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            return;
+        }
+
         resp.setHeader("Content-Length", Integer.toString(data.length));
 
         PrintWriter out = null;
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.json.rpc.commons.JsonRpcErrorCodes;
+import org.json.rpc.commons.JsonRpcFraming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Serves a {@link JsonRpcExecutor} over long lived stream connections, with
+ * messages framed as described in {@link JsonRpcFraming}. All connections
+ * are read and written by a single selector thread, their requests are
+ * executed concurrently on the worker executor, so a client can have many
+ * requests outstanding on one connection. Responses are written as they
+ * complete, clients match them to requests by id.
+ * <p>
+ * A request which could not be executed, e.g. because the worker executor
+ * rejected it, is answered with an internal error. Bound the queue of the
+ * workers to shed load instead of queueing without limit.
+ * <p>
+ * The server channel is opened and bound by the caller, which makes it
+ * work for TCP as well as Unix domain sockets (Java 16+):
+ * <pre>
+ * ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+ * channel.bind(UnixDomainSocketAddress.of("/run/service.sock"));
+ * new JsonRpcSocketServer(executor, channel, workers).start();
+ * </pre>
+ */
+public class JsonRpcSocketServer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsonRpcSocketServer.class);
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private static final Gson GSON = new Gson();
+
+    private final JsonRpcExecutor executor;
+    private final ServerSocketChannel serverChannel;
+    private final Executor workers;
+
+    private volatile Selector selector;
+    private volatile boolean closed;
+
+    public JsonRpcSocketServer(JsonRpcExecutor executor, ServerSocketChannel serverChannel, Executor workers) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (serverChannel == null) {
+            throw new NullPointerException("serverChannel");
+        }
+        if (workers == null) {
+            throw new NullPointerException("workers");
+        }
+        this.executor = executor;
+        this.serverChannel = serverChannel;
+        this.workers = workers;
+    }
+
+    /**
+     * Starts accepting connections on a background selector thread.
+     */
+    public synchronized void start() throws IOException {
+        if (selector != null) {
+            throw new IllegalStateException("server already started");
+        }
+        Selector s = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(s, SelectionKey.OP_ACCEPT);
+        selector = s;
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                select();
+            }
+        }, "jsonrpc-socket-selector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void select() {
+        Selector s = selector;
+        try {
+            while (!closed) {
+                s.select();
+                Iterator<SelectionKey> keys = s.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept(s);
+                    } else {
+                        ready(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.error("selector failed, server stopped", e);
+            }
+        } finally {
+            for (SelectionKey key : s.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(s);
+        }
+    }
+
+    private void accept(Selector s) {
+        SocketChannel channel = null;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(s, SelectionKey.OP_READ);
+            key.attach(new Connection(key, channel));
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.warn("unable to accept connection", e);
+            }
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void ready(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException e) {
+            LOG.debug("connection failed", e);
+            connection.close();
+        } catch (CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    private void execute(final FrameTransport transport) {
+        executor.executeAsync(transport, workers).whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, Throwable t) {
+                if (t != null) {
+                    transport.failed(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones, requests being
+     * executed can't be answered anymore.
+     */
+    public void close() throws IOException {
+        closed = true;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+        serverChannel.close();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Internal error responses for the requests of a frame, as the executor
+     * would have answered them.
+     *
+     * @return <code>null</code> if it holds only notifications
+     */
+    private static String internalErrors(String request) {
+        JsonElement req;
+        try {
+            req = new JsonParser().parse(request);
+        } catch (JsonParseException e) {
+            req = JsonNull.INSTANCE;
+        }
+
+        List<JsonRpcResponse> responses = new ArrayList<JsonRpcResponse>(1);
+        if (req.isJsonArray() && req.getAsJsonArray().size() > 0) {
+            JsonArray batch = req.getAsJsonArray();
+            for (int i = 0; i < batch.size(); i++) {
+                addInternalError(responses, batch.get(i));
+            }
+            return (responses.isEmpty() ? null : JsonRpcResponse.toString(GSON, responses, true));
+        }
+
+        addInternalError(responses, req);
+        return (responses.isEmpty() ? null : JsonRpcResponse.toString(GSON, responses, false));
+    }
+
+    private static void addInternalError(List<JsonRpcResponse> responses, JsonElement req) {
+        if (JsonRpcExecutor.isNotification(req)) {
+            return;
+        }
+        JsonElement id = (req.isJsonObject() ? req.getAsJsonObject().get("id") : null);
+        responses.add(JsonRpcResponse.error(id, JsonRpcErrorCodes.INTERNAL_ERROR_CODE,
+                "unable to execute request", null));
+    }
+
+    /**
+     * State of a connection. Reads happen on the selector thread only, writes
+     * are attempted right away by the thread completing a response, and left
+     * to the selector thread when the socket buffer is full.
+     */
+    private final class Connection {
+
+        private final SelectionKey key;
+        private final SocketChannel channel;
+
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteBuffer header = ByteBuffer.allocate(JsonRpcFraming.HEADER_SIZE);
+        private ByteBuffer frame;
+
+        // guarded by this
+        private final Queue<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+
+        Connection(SelectionKey key, SocketChannel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+
+            in.flip();
+            while (in.hasRemaining()) {
+                if (frame == null) {
+                    transfer(in, header);
+                    if (header.hasRemaining()) {
+                        break;
+                    }
+                    frame = ByteBuffer.allocate(JsonRpcFraming.checkLength(header.getInt(0)));
+                    header.clear();
+                }
+
+                transfer(in, frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                String request = new String(frame.array(), 0, frame.capacity(), StandardCharsets.UTF_8);
+                frame = null;
+                execute(new FrameTransport(this, request));
+            }
+            in.clear();
+        }
+
+        void write(ByteBuffer data) throws IOException {
+            synchronized (this) {
+                if (!channel.isOpen()) {
+                    throw new ClosedChannelException();
+                }
+                if (out.isEmpty()) {
+                    channel.write(data);
+                    if (!data.hasRemaining()) {
+                        return;
+                    }
+                }
+                out.add(data);
+                if (out.size() == 1) {
+                    try {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    } catch (CancelledKeyException e) {
+                        throw new ClosedChannelException();
+                    }
+                    key.selector().wakeup();
+                }
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            ByteBuffer data;
+            while ((data = out.peek()) != null) {
+                channel.write(data);
+                if (data.hasRemaining()) {
+                    return;
+                }
+                out.remove();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+        void close() {
+            key.cancel();
+            closeQuietly(channel);
+            synchronized (this) {
+                out.clear();
+            }
+        }
+    }
+
+    private static void transfer(ByteBuffer src, ByteBuffer dst) {
+        int n = Math.min(src.remaining(), dst.remaining());
+        int limit = src.limit();
+        src.limit(src.position() + n);
+        dst.put(src);
+        src.limit(limit);
+    }
+
+    /**
+     * A single request read from a connection, its response is written back
+     * to the same connection.
+     */
+    private static final class FrameTransport implements JsonRpcServerTransport {
+
+        private final Connection connection;
+        private final String request;
+
+        private volatile boolean answered;
+
+        FrameTransport(Connection connection, String request) {
+            this.connection = connection;
+            this.request = request;
+        }
+
+        public String readRequest() {
+            return request;
+        }
+
+        public void writeResponse(String responseData) throws IOException {
+            answered = true;
+            connection.write(JsonRpcFraming.encode(responseData));
+        }
+
+        void failed(Throwable t) {
+            LOG.warn("unable to execute request", t);
+            if (answered) {
+                return;
+            }
+
+            String response = internalErrors(request);
+            if (response != null) {
+                try {
+                    writeResponse(response);
+                } catch (IOException e) {
+                    LOG.debug("unable to write error response", e);
+                }
+            }
+        }
+    }
+}
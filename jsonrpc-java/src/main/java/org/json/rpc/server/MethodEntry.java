@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An exported method bound to the handler it has to be executed on.
+ */
+final class MethodEntry {
+
+    private final String name;
+    private final HandleEntry<?> handleEntry;
+    private final Method method;
+    private final MethodInvoker invoker;
+    private final TypeAdapter<?>[] paramAdapters;
+    private final Map<String, Integer> paramIndexes;
+    private final boolean[] primitiveParams;
+    private final boolean[] longParams;
+    private final int requiredParams;
+    private final ResultCache resultCache;
+
+    MethodEntry(String name, HandleEntry<?> handleEntry, Method method, InvocationEngine engine, Gson gson,
+                ResultCache resultCache) {
+        this.name = name;
+        this.resultCache = resultCache;
+        this.handleEntry = handleEntry;
+        this.method = method;
+        this.invoker = bind(handleEntry.getHandler(), method, engine);
+
+        Type[] types = method.getGenericParameterTypes();
+        this.paramAdapters = new TypeAdapter<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            paramAdapters[i] = gson.getAdapter(TypeToken.get(types[i]));
+        }
+
+        Class<?>[] classes = method.getParameterTypes();
+        this.primitiveParams = new boolean[classes.length];
+        this.longParams = new boolean[classes.length];
+        int required = 0;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i].isPrimitive()) {
+                primitiveParams[i] = true;
+                required++;
+            }
+            longParams[i] = OverloadResolver.isLong(classes[i]);
+        }
+        this.requiredParams = required;
+
+        String[] names = handleEntry.getParameterNames(method);
+        if (names == null) {
+            this.paramIndexes = null;
+        } else {
+            this.paramIndexes = new HashMap<String, Integer>();
+            for (int i = 0; i < names.length; i++) {
+                paramIndexes.put(names[i], i);
+            }
+        }
+    }
+
+    private static MethodInvoker bind(Object handler, Method method, InvocationEngine engine) {
+        if (engine == InvocationEngine.METHOD_HANDLE) {
+            try {
+                return new MethodHandleInvoker(handler, method);
+            } catch (Exception e) {
+                // not accessible as a method handle, reflection still works
+            }
+        }
+        return new ReflectiveMethodInvoker(handler, method);
+    }
+
+    /**
+     * The full <code>handle.method</code> name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Cache of serialized results, <code>null</code> unless the method is
+     * cacheable.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public HandleEntry<?> getHandleEntry() {
+        return handleEntry;
+    }
+
+    public Object getHandler() {
+        return handleEntry.getHandler();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Binds the params straight from the parsed tree, without going
+     * through their JSON text again.
+     */
+    public Object[] getParameters(JsonArray params) {
+        Object[] args = new Object[paramAdapters.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = bind(i, params.get(i));
+        }
+        return args;
+    }
+
+    /**
+     * Whether the method can be called with the by-name params, all of them
+     * are known and none of the primitive parameters is left out.
+     */
+    public boolean accepts(JsonObject params) {
+        if (paramIndexes == null) {
+            return false;
+        }
+
+        int required = 0;
+        for (Map.Entry<String, JsonElement> e : params.entrySet()) {
+            Integer index = paramIndexes.get(e.getKey());
+            if (index == null) {
+                return false;
+            }
+            if (primitiveParams[index]) {
+                required++;
+            }
+        }
+        return required == requiredParams;
+    }
+
+    /**
+     * @return the position of the parameter of the name, <code>-1</code> if
+     *         there is none
+     */
+    public int getParamIndex(String name) {
+        Integer index = (paramIndexes != null ? paramIndexes.get(name) : null);
+        return (index != null ? index : -1);
+    }
+
+    /**
+     * Binds by-name params to their position, parameters left out are
+     * <code>null</code>.
+     *
+     * @see #accepts(JsonObject)
+     */
+    public Object[] getParameters(JsonObject params) {
+        Object[] args = new Object[paramAdapters.length];
+        for (Map.Entry<String, JsonElement> e : params.entrySet()) {
+            int index = paramIndexes.get(e.getKey());
+            args[index] = bind(index, e.getValue());
+        }
+        return args;
+    }
+
+    private Object bind(int index, JsonElement param) {
+        if (longParams[index] && OverloadResolver.getKind(param) == OverloadResolver.WHOLE) {
+            param = toLong(param);
+        }
+        return paramAdapters[index].fromJsonTree(param);
+    }
+
+    /**
+     * Gson reads a decimal without a fraction, e.g. <code>1.0</code>, as an
+     * integer from a stream but not from a tree, it is turned into one here.
+     * Only called for {@link OverloadResolver#WHOLE} params, which fit.
+     */
+    private static JsonElement toLong(JsonElement param) {
+        return new JsonPrimitive(new BigDecimal(param.getAsString()).longValueExact());
+    }
+
+    public Object[] getParameters(JsonElement params) {
+        return (params.isJsonObject() ? getParameters(params.getAsJsonObject()) : getParameters(params.getAsJsonArray()));
+    }
+
+    public Object invoke(Object[] args) throws Throwable {
+        return invoker.invoke(args);
+    }
+}
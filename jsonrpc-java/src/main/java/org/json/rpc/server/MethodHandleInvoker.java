@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a method through a {@link MethodHandle} already bound to the
+ * handler and adapted to <code>(Object[])Object</code>, so each call is a
+ * single <code>invokeExact</code> which the JIT can inline.
+ */
+final class MethodHandleInvoker implements MethodInvoker {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final MethodHandle handle;
+
+    MethodHandleInvoker(Object handler, Method method) throws IllegalAccessException {
+        MethodHandle mh;
+        try {
+            mh = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            // e.g. an interface which is not public, the reflective
+            // path would need the same access check to be suppressed
+            method.setAccessible(true);
+            mh = MethodHandles.lookup().unreflect(method);
+        }
+
+        this.handle = mh.bindTo(handler)
+                .asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(INVOKER_TYPE);
+    }
+
+    public Object invoke(Object[] args) throws Throwable {
+        return (Object) handle.invokeExact(args);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.json.rpc.commons.JsonRpcErrorCodes;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics of a {@link JsonRpcExecutor} to a Micrometer
+ * {@link MeterRegistry}, all meters are tagged with the <code>method</code>:
+ * <ul>
+ * <li><code>jsonrpc.calls</code>, number of calls</li>
+ * <li><code>jsonrpc.errors</code>, number of errors, tagged with the error <code>code</code>. Codes
+ * other than the ones defined by JSON-RPC are tagged <code>server</code> if they are in the server
+ * error range, <code>other</code> if not, so that handlers can't add tags without bound</li>
+ * <li><code>jsonrpc.latency</code>, timer with a histogram, tagged with the <code>phase</code></li>
+ * <li><code>jsonrpc.request.size</code> and <code>jsonrpc.response.size</code>, in bytes</li>
+ * </ul>
+ * Micrometer is not a dependency of jsonrpc, it has to be on the classpath
+ * when this class is used.
+ */
+public class MicrometerJsonRpcMetrics implements JsonRpcMetrics {
+
+    private static final JsonRpcMetrics.Phase[] PHASES = JsonRpcMetrics.Phase.values();
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final ConcurrentMap<String, MethodMeters> meters = new ConcurrentHashMap<String, MethodMeters>();
+
+    public MicrometerJsonRpcMetrics(MeterRegistry registry) {
+        this(registry, "jsonrpc");
+    }
+
+    public MicrometerJsonRpcMetrics(MeterRegistry registry, String prefix) {
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        if (prefix == null) {
+            throw new NullPointerException("prefix");
+        }
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    public void recordCall(String method) {
+        getMeters(method).calls.increment();
+    }
+
+    public void recordError(String method, Integer errorCode) {
+        getMeters(method).getErrors(errorCode).increment();
+    }
+
+    public void recordLatency(String method, Phase phase, long nanos) {
+        getMeters(method).latency[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRequestSize(String method, long size) {
+        getMeters(method).requestSize.record(size);
+    }
+
+    public void recordResponseSize(String method, long size) {
+        getMeters(method).responseSize.record(size);
+    }
+
+    private MethodMeters getMeters(String method) {
+        MethodMeters methodMeters = meters.get(method);
+        if (methodMeters == null) {
+            methodMeters = new MethodMeters(method);
+            MethodMeters existing = meters.putIfAbsent(method, methodMeters);
+            if (existing != null) {
+                methodMeters = existing;
+            }
+        }
+        return methodMeters;
+    }
+
+    private static String getCodeTag(Integer errorCode) {
+        if (errorCode == null) {
+            return "none";
+        }
+        switch (errorCode) {
+            case JsonRpcErrorCodes.PARSE_ERROR_CODE:
+            case JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE:
+            case JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE:
+            case JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE:
+            case JsonRpcErrorCodes.INTERNAL_ERROR_CODE:
+                return errorCode.toString();
+            default:
+                return (JsonRpcErrorCodes.isServerError(errorCode) ? "server" : "other");
+        }
+    }
+
+    /**
+     * Meters of a single method, looked up once instead of on every call.
+     */
+    private final class MethodMeters {
+
+        private final String method;
+        private final Counter calls;
+        private final Timer[] latency;
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+        private final ConcurrentMap<String, Counter> errors = new ConcurrentHashMap<String, Counter>();
+
+        MethodMeters(String method) {
+            this.method = method;
+            this.calls = Counter.builder(prefix + ".calls")
+                    .tag("method", method)
+                    .register(registry);
+
+            this.latency = new Timer[PHASES.length];
+            for (int i = 0; i < PHASES.length; i++) {
+                latency[i] = Timer.builder(prefix + ".latency")
+                        .tag("method", method)
+                        .tag("phase", PHASES[i].name().toLowerCase(Locale.ENGLISH))
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+
+            this.requestSize = DistributionSummary.builder(prefix + ".request.size")
+                    .tag("method", method)
+                    .baseUnit("bytes")
+                    .register(registry);
+            this.responseSize = DistributionSummary.builder(prefix + ".response.size")
+                    .tag("method", method)
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+
+        Counter getErrors(Integer errorCode) {
+            String code = getCodeTag(errorCode);
+            Counter counter = errors.get(code);
+            if (counter == null) {
+                counter = Counter.builder(prefix + ".errors")
+                        .tag("method", method)
+                        .tag("code", code)
+                        .register(registry);
+                errors.putIfAbsent(code, counter);
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses among the overloads of a method with the same arity, by the JSON
+ * token types of the params.
+ * <p>
+ * Every parameter type is scored against each token type (null, boolean,
+ * integral number, decimal number, decimal number without a fraction,
+ * string, array, object) when the table is
+ * built, the best candidate for every combination of token types is then
+ * precomputed as well for small arities. Resolving a call never tries to
+ * bind the params. Ties go to the first candidate in the order of their
+ * parameter types, so resolution does not depend on the order methods were
+ * reflected in. Calls no candidate can take, a single one included, resolve
+ * to none.
+ * <p>
+ * By-name params are scored the same way, against the parameters of the
+ * same name, those left out score nothing.
+ */
+final class OverloadResolver {
+
+    static final int NULL = 0;
+    static final int BOOLEAN = 1;
+    static final int INTEGER = 2;
+    static final int DECIMAL = 3;
+    static final int STRING = 4;
+    static final int ARRAY = 5;
+    static final int OBJECT = 6;
+    /**
+     * A decimal number without a fraction which fits in a <code>long</code>,
+     * e.g. <code>2.0</code>, it is the only decimal integral types take.
+     */
+    static final int WHOLE = 7;
+
+    private static final int KINDS = 8;
+
+    /**
+     * Overloads up to this arity get their best candidate precomputed for
+     * every combination of token types, <code>8^4</code> entries at most.
+     */
+    private static final int MAX_TABLE_ARITY = 4;
+
+    private static final Comparator<MethodEntry> ORDER = new Comparator<MethodEntry>() {
+        public int compare(MethodEntry a, MethodEntry b) {
+            return getSignature(a.getMethod()).compareTo(getSignature(b.getMethod()));
+        }
+    };
+
+    private final MethodEntry[] candidates;
+    private final int[][] scores;
+    private final MethodEntry[] table;
+
+    private OverloadResolver(MethodEntry[] candidates, boolean byPosition) {
+        this.candidates = candidates;
+
+        this.scores = new int[candidates.length][];
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] = getScores(candidates[i].getMethod());
+        }
+
+        int arity = candidates[0].getMethod().getParameterTypes().length;
+        if (!byPosition || candidates.length == 1 || arity > MAX_TABLE_ARITY) {
+            this.table = null;
+            return;
+        }
+
+        int size = 1;
+        for (int i = 0; i < arity; i++) {
+            size *= KINDS;
+        }
+        this.table = new MethodEntry[size];
+        int[] kinds = new int[arity];
+        for (int index = 0; index < size; index++) {
+            int k = index;
+            for (int i = 0; i < arity; i++) {
+                kinds[i] = k % KINDS;
+                k /= KINDS;
+            }
+            table[index] = rank(kinds);
+        }
+    }
+
+    /**
+     * @param entries methods of the same name and arity
+     */
+    static OverloadResolver of(List<MethodEntry> entries) {
+        List<MethodEntry> sorted = new ArrayList<MethodEntry>(entries);
+        Collections.sort(sorted, ORDER);
+
+        // the same method inherited through several interfaces
+        List<MethodEntry> distinct = new ArrayList<MethodEntry>();
+        for (MethodEntry e : sorted) {
+            MethodEntry last = (distinct.isEmpty() ? null : distinct.get(distinct.size() - 1));
+            if (last == null || !Arrays.equals(last.getMethod().getGenericParameterTypes(),
+                    e.getMethod().getGenericParameterTypes())) {
+                distinct.add(e);
+            }
+        }
+        return new OverloadResolver(distinct.toArray(new MethodEntry[distinct.size()]), true);
+    }
+
+    /**
+     * @param entries distinct methods of the same name, of any arity, in the
+     *                order ties are resolved in
+     */
+    static OverloadResolver byName(List<MethodEntry> entries) {
+        return new OverloadResolver(entries.toArray(new MethodEntry[entries.size()]), false);
+    }
+
+    /**
+     * @return the distinct candidates, in the order ties are resolved in
+     */
+    public List<MethodEntry> getCandidates() {
+        return Arrays.asList(candidates);
+    }
+
+    /**
+     * @return <code>null</code> if no candidate can take the params
+     */
+    public MethodEntry resolve(JsonArray params) {
+        if (table != null) {
+            int index = 0;
+            for (int i = params.size() - 1; i >= 0; i--) {
+                index = index * KINDS + getKind(params.get(i));
+            }
+            return table[index];
+        }
+
+        MethodEntry best = null;
+        int bestScore = -1;
+        for (int c = 0; c < candidates.length; c++) {
+            int score = getScore(scores[c], params);
+            if (score > bestScore) {
+                best = candidates[c];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return <code>null</code> if no candidate can take the by-name params
+     */
+    public MethodEntry resolve(JsonObject params) {
+        MethodEntry best = null;
+        int bestScore = -1;
+        for (int c = 0; c < candidates.length; c++) {
+            int score = getScore(candidates[c], scores[c], params);
+            if (score > bestScore) {
+                best = candidates[c];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private MethodEntry rank(int[] kinds) {
+        MethodEntry best = null;
+        int bestScore = -1;
+        for (int c = 0; c < candidates.length; c++) {
+            int score = getScore(scores[c], kinds);
+            if (score > bestScore) {
+                best = candidates[c];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return <code>-1</code> if a param can't be bound
+     */
+    private static int getScore(int[] scores, int[] kinds) {
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            int score = scores[i * KINDS + kinds[i]];
+            if (score == 0) {
+                return -1;
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    private static int getScore(int[] scores, JsonArray params) {
+        int total = 0;
+        for (int i = 0; i < params.size(); i++) {
+            int score = scores[i * KINDS + getKind(params.get(i))];
+            if (score == 0) {
+                return -1;
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    /**
+     * @return <code>-1</code> if the candidate doesn't take the params
+     */
+    private static int getScore(MethodEntry candidate, int[] scores, JsonObject params) {
+        if (!candidate.accepts(params)) {
+            return -1;
+        }
+
+        int total = 0;
+        for (Map.Entry<String, JsonElement> e : params.entrySet()) {
+            int score = scores[candidate.getParamIndex(e.getKey()) * KINDS + getKind(e.getValue())];
+            if (score == 0) {
+                return -1;
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    private static int[] getScores(Method method) {
+        Type[] types = method.getGenericParameterTypes();
+        int[] scores = new int[types.length * KINDS];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = TypeToken.get(types[i]).getRawType();
+            for (int kind = 0; kind < KINDS; kind++) {
+                scores[i * KINDS + kind] = getScore(type, kind);
+            }
+        }
+        return scores;
+    }
+
+    static int getKind(JsonElement e) {
+        if (e == null || e.isJsonNull()) {
+            return NULL;
+        }
+        if (e.isJsonArray()) {
+            return ARRAY;
+        }
+        if (e.isJsonObject()) {
+            return OBJECT;
+        }
+
+        JsonPrimitive p = e.getAsJsonPrimitive();
+        if (p.isBoolean()) {
+            return BOOLEAN;
+        }
+        if (p.isString()) {
+            return STRING;
+        }
+
+        String number = p.getAsString();
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return (isWhole(number) ? WHOLE : DECIMAL);
+            }
+        }
+        return INTEGER;
+    }
+
+    private static boolean isWhole(String number) {
+        try {
+            new BigDecimal(number).longValueExact();
+            return true;
+        } catch (ArithmeticException e) {
+            // a fraction, or out of range
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * How well a token of the kind binds to the type, <code>3</code> for an
+     * exact match down to <code>1</code> for what Gson converts leniently,
+     * <code>0</code> if it can't be bound at all.
+     */
+    static int getScore(Class<?> type, int kind) {
+        if (type == Object.class) {
+            return 1;
+        }
+        if (kind == NULL) {
+            return (type.isPrimitive() ? 0 : 1);
+        }
+
+        if (type == boolean.class || type == Boolean.class) {
+            return (kind == BOOLEAN ? 3 : kind == STRING ? 1 : 0);
+        }
+        if (isIntegral(type)) {
+            // a decimal without a fraction, e.g. 1.0, is bound by MethodEntry
+            return (kind == INTEGER ? 3 : kind == STRING || (kind == WHOLE && isLong(type)) ? 1 : 0);
+        }
+        if (kind == WHOLE) {
+            // taken like any other decimal by all other types
+            kind = DECIMAL;
+        }
+        if (isDecimal(type)) {
+            return (kind == DECIMAL ? 3 : kind == INTEGER ? 2 : kind == STRING ? 1 : 0);
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return (kind == INTEGER || kind == DECIMAL ? 2 : kind == STRING ? 1 : 0);
+        }
+        if (type == char.class || type == Character.class) {
+            return (kind == STRING ? 2 : kind == INTEGER ? 1 : 0);
+        }
+        if (type == String.class || type == CharSequence.class) {
+            return (kind == STRING ? 3 : kind == ARRAY || kind == OBJECT ? 0 : 1);
+        }
+        if (type.isEnum()) {
+            return (kind == STRING ? 3 : 0);
+        }
+        if (type.isArray() || Collection.class.isAssignableFrom(type)) {
+            return (kind == ARRAY ? 3 : 0);
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            // Gson also reads maps written as an array of entries
+            return (kind == OBJECT ? 3 : kind == ARRAY ? 1 : 0);
+        }
+        // a bean, or anything a registered adapter may read
+        return (kind == OBJECT ? 2 : 1);
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return isLong(type) || type == BigInteger.class;
+    }
+
+    /**
+     * Integral types which fit in a <code>long</code>.
+     */
+    static boolean isLong(Class<?> type) {
+        return type == int.class || type == Integer.class
+                || type == long.class || type == Long.class
+                || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class;
+    }
+
+    private static boolean isDecimal(Class<?> type) {
+        return type == double.class || type == Double.class
+                || type == float.class || type == Float.class
+                || type == BigDecimal.class;
+    }
+
+    private static String getSignature(Method method) {
+        StringBuilder buff = new StringBuilder();
+        for (Type type : method.getGenericParameterTypes()) {
+            buff.append(type.getTypeName()).append(',');
+        }
+        return buff.append(method.getDeclaringClass().getName()).toString();
+    }
+}
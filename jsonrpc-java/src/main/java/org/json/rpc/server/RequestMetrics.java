@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Request level metrics, only created when metrics are enabled. The parse
+ * metrics are held back until the response is written, as the method of a
+ * single request is not known before it has been handled.
+ */
+final class RequestMetrics {
+
+    private final JsonRpcMetrics metrics;
+    private final long started;
+
+    private long parseNanos = -1;
+    private long requestSize;
+
+    private RequestMetrics(JsonRpcMetrics metrics) {
+        this.metrics = metrics;
+        this.started = System.nanoTime();
+    }
+
+    public static RequestMetrics start(JsonRpcMetrics metrics) {
+        return (metrics == null ? null : new RequestMetrics(metrics));
+    }
+
+    public JsonRpcMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void parsed(long requestSize) {
+        this.parseNanos = System.nanoTime() - started;
+        this.requestSize = requestSize;
+    }
+
+    /**
+     * Records the request level metrics, for requests which are not answered
+     * <code>writeNanos</code> is negative.
+     */
+    public void finish(String method, long writeNanos, long responseSize) {
+        if (parseNanos >= 0) {
+            metrics.recordLatency(method, JsonRpcMetrics.Phase.PARSE, parseNanos);
+            metrics.recordRequestSize(method, requestSize);
+        }
+        if (writeNanos >= 0) {
+            metrics.recordLatency(method, JsonRpcMetrics.Phase.WRITE, writeNanos);
+            metrics.recordResponseSize(method, responseSize);
+        }
+    }
+
+    /**
+     * The method a response is recorded under, also for requests which
+     * could not be dispatched.
+     */
+    static String getMethodName(JsonRpcResponse resp) {
+        String methodName = resp.getMethodName();
+        return (methodName != null ? methodName : JsonRpcMetrics.UNKNOWN_METHOD);
+    }
+
+    /**
+     * Size of the text encoded as UTF-8, so that sizes are in bytes whether
+     * a message is read as text or through a binary codec.
+     */
+    static long utf8Length(String str) {
+        long n = 0;
+        for (int i = 0; i < str.length(); i++) {
+            n += utf8Length(str.charAt(i));
+        }
+        return n;
+    }
+
+    /**
+     * A surrogate pair is encoded in 4 bytes, 2 are counted for each half.
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    static final class CountingReader extends FilterReader {
+
+        long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                count += utf8Length((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            for (int i = 0; i < n; i++) {
+                count += utf8Length(cbuf[off + i]);
+            }
+            return n;
+        }
+    }
+
+    static final class CountingWriter extends FilterWriter {
+
+        long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            super.write(c);
+            count += utf8Length((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            super.write(cbuf, off, len);
+            for (int i = 0; i < len; i++) {
+                count += utf8Length(cbuf[off + i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            super.write(str, off, len);
+            for (int i = 0; i < len; i++) {
+                count += utf8Length(str.charAt(off + i));
+            }
+        }
+    }
+
+    static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    static final class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
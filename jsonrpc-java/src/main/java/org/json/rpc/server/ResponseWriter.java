@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import com.google.gson.Gson;
+import org.json.rpc.commons.JsonRpcCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes responses to a transport, through its codec if it has one,
+ * streamed if asked for and the transport supports it, and as a string
+ * otherwise. A response which cannot be written is logged, there is no
+ * one left to tell.
+ */
+final class ResponseWriter {
+
+    // logged as before, under the executor
+    private static final Logger LOG = LoggerFactory.getLogger(JsonRpcExecutor.class);
+
+    private final Gson gson;
+
+    ResponseWriter(Gson gson) {
+        this.gson = gson;
+    }
+
+    void write(JsonRpcServerTransport transport, JsonRpcResponse resp, boolean stream,
+               RequestMetrics requestMetrics) {
+        write(transport, Collections.singletonList(resp), false, stream, requestMetrics);
+    }
+
+    void write(JsonRpcServerTransport transport, List<JsonRpcResponse> responses, boolean stream,
+               RequestMetrics requestMetrics) {
+        write(transport, responses, true, stream, requestMetrics);
+    }
+
+    private void write(JsonRpcServerTransport transport, List<JsonRpcResponse> responses, boolean batch,
+                       boolean stream, RequestMetrics requestMetrics) {
+        long start = (requestMetrics != null ? System.nanoTime() : 0L);
+        long size;
+        try {
+            JsonRpcCodec codec = (transport instanceof JsonRpcServerCodecTransport
+                    ? ((JsonRpcServerCodecTransport) transport).getResponseCodec() : null);
+            if (codec != null) {
+                OutputStream out = ((JsonRpcServerCodecTransport) transport).getResponseStream();
+                RequestMetrics.CountingOutputStream counter = null;
+                if (requestMetrics != null) {
+                    out = counter = new RequestMetrics.CountingOutputStream(out);
+                }
+                try {
+                    codec.encode(JsonRpcResponse.toJsonTree(gson, responses, batch), out);
+                } finally {
+                    out.close();
+                }
+                LOG.debug("JSON-RPC {} response <<  {}", codec.getContentType(), responses);
+                size = (counter != null ? counter.count : 0L);
+            } else if (stream && transport instanceof JsonRpcServerStreamTransport) {
+                Writer out = ((JsonRpcServerStreamTransport) transport).getResponseWriter();
+                RequestMetrics.CountingWriter counter = null;
+                if (requestMetrics != null) {
+                    out = counter = new RequestMetrics.CountingWriter(out);
+                }
+                try {
+                    JsonRpcResponse.write(gson, out, responses, batch);
+                } finally {
+                    out.close();
+                }
+                LOG.debug("JSON-RPC response streamed <<  {}", responses);
+                size = (counter != null ? counter.count : 0L);
+            } else {
+                String responseData = JsonRpcResponse.toString(gson, responses, batch);
+                LOG.debug("JSON-RPC response <<  {}", responseData);
+                transport.writeResponse(responseData);
+                size = (requestMetrics != null ? RequestMetrics.utf8Length(responseData) : 0L);
+            }
+        } catch (Throwable t) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error("unable to write response : " + responses, t);
+            }
+            return;
+        }
+
+        if (requestMetrics != null) {
+            String methodName = (batch ? JsonRpcMetrics.BATCH : RequestMetrics.getMethodName(responses.get(0)));
+            requestMetrics.finish(methodName, System.nanoTime() - start, size);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.server;
+
+import org.json.rpc.commons.JsonRpcCacheable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of serialized results keyed by the params JSON, entries
+ * expire after a fixed time. The cache is split into segments which are
+ * each an LRU map guarded by their own lock, so concurrent callers rarely
+ * wait on each other.
+ */
+final class ResultCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final long ttlNanos;
+    private final Segment[] segments;
+
+    ResultCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize should be at least 1 : " + maxSize);
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl should be positive : " + ttl);
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 <= maxSize) {
+            count *= 2;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((maxSize + count - 1) / count);
+        }
+    }
+
+    static ResultCache of(JsonRpcCacheable cacheable) {
+        return new ResultCache(cacheable.maxSize(), cacheable.ttl(), cacheable.timeUnit());
+    }
+
+    public String get(String params) {
+        Segment segment = segmentFor(params);
+        synchronized (segment) {
+            Entry entry = segment.get(params);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expires >= 0) {
+                segment.remove(params);
+                return null;
+            }
+            return entry.resultJson;
+        }
+    }
+
+    public void put(String params, String resultJson) {
+        Entry entry = new Entry(resultJson, System.nanoTime() + ttlNanos);
+        Segment segment = segmentFor(params);
+        synchronized (segment) {
+            segment.put(params, entry);
+        }
+    }
+
+    private Segment segmentFor(String params) {
+        int h = params.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Entry {
+
+        final String resultJson;
+        final long expires;
+
+        Entry(String resultJson, long expires) {
+            this.resultJson = resultJson;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<String, Entry> {
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
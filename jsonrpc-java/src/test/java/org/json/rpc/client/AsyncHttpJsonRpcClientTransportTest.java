@@ -0,0 +1,58 @@
+package org.json.rpc.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+public class AsyncHttpJsonRpcClientTransportTest {
+
+    private HttpServer server;
+    private final AtomicInteger received = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jsonrpc", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                while (in.read() >= 0) {
+                    // drain
+                }
+                received.incrementAndGet();
+                // what servers answer notifications with
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testNoContent() throws Exception {
+        AsyncHttpJsonRpcClientTransport transport = new AsyncHttpJsonRpcClientTransport(
+                new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/jsonrpc"));
+        String notification = "{\"jsonrpc\":\"2.0\",\"method\":\"audit.record\",\"params\":[\"event\"]}";
+
+        assertEquals(transport.callAsync(notification).get(5, TimeUnit.SECONDS), "");
+        assertEquals(transport.call(notification), "");
+        assertEquals(received.get(), 2);
+    }
+}
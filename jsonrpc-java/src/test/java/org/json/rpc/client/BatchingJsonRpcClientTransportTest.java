@@ -0,0 +1,97 @@
+package org.json.rpc.client;
+
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerTransport;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+public class BatchingJsonRpcClientTransportTest {
+
+    private JsonRpcExecutor executor;
+    private AtomicInteger roundTrips;
+    private JsonRpcClientTransport transport;
+
+    @BeforeMethod
+    public void setupMethod() {
+        executor = new JsonRpcExecutor();
+        executor.addHandler("echo", new Echo() {
+            public int echo(int value) {
+                return value;
+            }
+        }, Echo.class);
+
+        roundTrips = new AtomicInteger();
+        transport = new JsonRpcClientTransport() {
+            public String call(final String requestData) throws Exception {
+                roundTrips.incrementAndGet();
+                final StringBuilder response = new StringBuilder();
+                executor.execute(new JsonRpcServerTransport() {
+                    public String readRequest() throws Exception {
+                        return requestData;
+                    }
+
+                    public void writeResponse(String responseData) throws Exception {
+                        response.append(responseData);
+                    }
+                });
+                return response.toString();
+            }
+        };
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneBatch() throws Exception {
+        final int n = 8;
+        BatchingJsonRpcClientTransport batching = new BatchingJsonRpcClientTransport(transport, n, 10, TimeUnit.SECONDS);
+        final Echo echo = new JsonRpcInvoker().get(batching, "echo", Echo.class);
+
+        final CyclicBarrier barrier = new CyclicBarrier(n);
+        ExecutorService threads = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < n; i++) {
+                final int value = i;
+                results.add(threads.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        barrier.await();
+                        return echo.echo(value);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < n; i++) {
+                assertEquals(results.get(i).get(10, TimeUnit.SECONDS).intValue(), i);
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        assertEquals(roundTrips.get(), 1);
+    }
+
+    @Test
+    public void testWindowClosesAfterDelay() throws Exception {
+        BatchingJsonRpcClientTransport batching = new BatchingJsonRpcClientTransport(transport, 100, 1, TimeUnit.MILLISECONDS);
+        Echo echo = new JsonRpcInvoker().get(batching, "echo", Echo.class);
+
+        assertEquals(echo.echo(1), 1);
+        assertEquals(echo.echo(2), 2);
+        assertEquals(roundTrips.get(), 2);
+    }
+
+    public static interface Echo {
+        int echo(int value);
+    }
+}
@@ -18,15 +18,40 @@ package org.json.rpc.client;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.json.rpc.commons.JsonRpcCacheable;
+import org.json.rpc.commons.JsonRpcClientException;
+import org.json.rpc.commons.JsonRpcNotification;
 import org.json.rpc.commons.JsonRpcRemoteException;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class JsonRpcInvokerTest {
@@ -159,6 +184,23 @@ public class JsonRpcInvokerTest {
     }
 
 
+    @Test
+    public void testMalformedResponse() {
+        JsonObject resp = new JsonObject();
+        resp.add("result", new JsonObject());
+        JsonElement[] responses = {new JsonArray(), resp};
+
+        for (JsonElement r : responses) {
+            TestInterface handle = invoker.get(getTransport(r), "someHandler", TestInterface.class);
+            try {
+                handle.call(1);
+                fail("should throw exception");
+            } catch (JsonRpcClientException e) {
+                // expected
+            }
+        }
+    }
+
     @Test
     public void testResultVoid() {
         JsonObject resp = new JsonObject();
@@ -169,12 +211,293 @@ public class JsonRpcInvokerTest {
     }
 
 
+    @Test
+    public void testResult() {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        resp.addProperty("result", true);
+        resp.addProperty("id", 1);
+
+        JsonRpcInvoker invoker = new JsonRpcInvoker();
+        invoker.setIdGenerator(FIXED_ID);
+        TestInterface handle = invoker.get(getTransport(resp), "someHandler", TestInterface.class);
+        assertTrue(handle.call(1));
+    }
+
+    @Test
+    public void testResponseId() {
+        JsonRpcInvoker invoker = new JsonRpcInvoker();
+        invoker.setIdGenerator(FIXED_ID);
+
+        JsonObject resp = new JsonObject();
+        resp.addProperty("result", true);
+        resp.addProperty("id", "1");
+        assertTrue(invoker.get(getTransport(resp), "someHandler", TestInterface.class).call(1));
+
+        resp.addProperty("id", 2);
+        try {
+            invoker.get(getTransport(resp), "someHandler", TestInterface.class).call(1);
+            fail("response of another request should be rejected");
+        } catch (JsonRpcClientException e) {
+            // expected
+        }
+
+        // the server could not read the request
+        resp = new JsonObject();
+        resp.add("id", JsonNull.INSTANCE);
+        resp.addProperty("error", "parse error");
+        try {
+            invoker.get(getTransport(resp), "someHandler", TestInterface.class).call(1);
+            fail("should throw exception");
+        } catch (JsonRpcRemoteException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStripedIdGenerator() throws Exception {
+        final StripedIdGenerator generator = new StripedIdGenerator();
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        long id = generator.nextId();
+                        assertTrue(id > 0);
+                        assertTrue(ids.add(id));
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals(ids.size(), 8 * 5000);
+    }
+
+    @Test
+    public void testResultIgnoredForVoid() {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        resp.add("result", new JsonArray());
+
+        TestInterface handle = invoker.get(getTransport(resp), "someHandler", TestInterface.class);
+        handle.call();
+    }
+
+    @Test
+    public void testInvokeAsync() throws Exception {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        resp.addProperty("result", true);
+
+        CompletableFuture<Boolean> result = invoker.invokeAsync(getAsyncTransport(resp), "someHandler", "call",
+                new Object[]{1}, Boolean.class);
+        assertTrue(result.get());
+    }
+
+    @Test
+    public void testInvokeAsyncError() throws Exception {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        JsonObject error = new JsonObject();
+        error.addProperty("code", 123);
+        resp.add("error", error);
+
+        CompletableFuture<Boolean> result = invoker.invokeAsync(getAsyncTransport(resp), "someHandler", "call",
+                new Object[]{1}, Boolean.class);
+        try {
+            result.get();
+            fail("should throw exception");
+        } catch (ExecutionException e) {
+            assertEquals(((JsonRpcRemoteException) e.getCause()).getCode(), Integer.valueOf(123));
+        }
+    }
+
+    @Test
+    public void testAsyncProxy() throws Exception {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        resp.addProperty("result", true);
+
+        AsyncTestInterface handle = invoker.get(getAsyncTransport(resp), "someHandler", AsyncTestInterface.class);
+        assertTrue(handle.call(1).get());
+
+        handle = invoker.get(getTransport(resp), "someHandler", AsyncTestInterface.class);
+        assertTrue(handle.call(1).get());
+    }
+
+    @Test
+    public void testStreamTransport() throws Exception {
+        JsonObject resp = new JsonObject();
+        resp.addProperty("jsonrpc", "2.0");
+        resp.addProperty("result", true);
+
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Reader reader = new StringReader(resp.toString()) {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        };
+        JsonRpcClientTransport transport = new JsonRpcClientStreamTransport() {
+            public Reader callStream(String requestData) throws Exception {
+                return reader;
+            }
+
+            public String call(String requestData) throws Exception {
+                throw new AssertionError("response should be streamed");
+            }
+        };
+
+        TestInterface handle = invoker.get(transport, "someHandler", TestInterface.class);
+        assertTrue(handle.call(1));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testCachedResponses() throws Exception {
+        JsonRpcInvoker invoker = new JsonRpcInvoker();
+        invoker.setCacheResponses(true);
+
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        JsonRpcClientTransport transport = new JsonRpcClientTransport() {
+            public String call(String requestData) throws Exception {
+                int n = calls.incrementAndGet();
+                release.await(10, TimeUnit.SECONDS);
+                int param = new JsonParser().parse(requestData).getAsJsonObject()
+                        .getAsJsonArray("params").get(0).getAsInt();
+                return "{\"jsonrpc\":\"2.0\",\"result\":" + (param * 100 + n) + "}";
+            }
+        };
+        final CachedTestInterface handle = invoker.get(transport, "someHandler", CachedTestInterface.class);
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(threads.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        return handle.get(1);
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(result.get().intValue(), 101);
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        assertEquals(handle.get(1), 101);
+        assertEquals(calls.get(), 1);
+
+        assertEquals(handle.get(2), 202);
+        assertEquals(handle.uncached(1), 103);
+        assertEquals(handle.uncached(1), 104);
+        assertEquals(calls.get(), 4);
+    }
+
+    static interface CachedTestInterface {
+        @JsonRpcCacheable
+        int get(int arg);
+
+        int uncached(int arg);
+    }
+
+    @Test
+    public void testNotification() throws Exception {
+        final List<String> requests = new ArrayList<String>();
+        JsonRpcClientTransport transport = new JsonRpcClientTransport() {
+            public String call(String requestData) throws Exception {
+                requests.add(requestData);
+                return "";
+            }
+        };
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        JsonRpcInvoker invoker = new JsonRpcInvoker();
+        invoker.setNotificationExecutor(new Executor() {
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+
+        NotificationTestInterface handle = invoker.get(transport, "someHandler", NotificationTestInterface.class);
+        handle.log("a");
+        handle.log("b");
+        assertTrue(requests.isEmpty());
+        assertEquals(tasks.size(), 1);
+
+        tasks.get(0).run();
+        assertEquals(requests.size(), 1);
+        JsonArray batch = (JsonArray) new JsonParser().parse(requests.get(0));
+        assertEquals(batch.size(), 2);
+        JsonObject req = batch.get(0).getAsJsonObject();
+        assertFalse(req.has("id"));
+        assertEquals(req.get("method").getAsString(), "someHandler.log");
+        assertEquals(req.getAsJsonArray("params").get(0).getAsString(), "a");
+
+        handle.log("c");
+        tasks.get(1).run();
+        assertEquals(new JsonParser().parse(requests.get(1)).getAsJsonObject()
+                .getAsJsonArray("params").get(0).getAsString(), "c");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNotificationNotVoid() {
+        invoker.get(getTransport(new JsonObject()), "someHandler", InvalidNotificationTestInterface.class).log("a");
+    }
+
+    static interface NotificationTestInterface {
+        @JsonRpcNotification
+        void log(String message);
+    }
+
+    static interface InvalidNotificationTestInterface {
+        @JsonRpcNotification
+        boolean log(String message);
+    }
+
+    static interface AsyncTestInterface {
+        CompletableFuture<Boolean> call(int arg);
+    }
+
     static interface TestInterface {
         boolean call(int arg);
 
         void call();
     }
 
+    static AsyncTransport getAsyncTransport(final JsonElement resp) {
+        return new AsyncTransport() {
+            public CompletableFuture<String> callAsync(String requestData) {
+                return CompletableFuture.completedFuture(resp.toString());
+            }
+
+            public String call(String requestData) throws Exception {
+                throw new AssertionError("should be called asynchronously");
+            }
+        };
+    }
+
+    static interface AsyncTransport extends JsonRpcClientTransport, JsonRpcAsyncClientTransport {
+    }
+
+    private static final JsonRpcIdGenerator FIXED_ID = new JsonRpcIdGenerator() {
+        public long nextId() {
+            return 1;
+        }
+    };
+
     static JsonRpcClientTransport getTransport(final JsonElement resp) {
         return new JsonRpcClientTransport() {
             public String call(String requestData) throws Exception {
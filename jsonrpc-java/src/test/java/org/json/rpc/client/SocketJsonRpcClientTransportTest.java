@@ -0,0 +1,190 @@
+package org.json.rpc.client;
+
+import org.json.rpc.commons.JsonRpcClientException;
+import org.json.rpc.commons.JsonRpcErrorCodes;
+import org.json.rpc.commons.JsonRpcFraming;
+import org.json.rpc.commons.JsonRpcNotification;
+import org.json.rpc.commons.JsonRpcRemoteException;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcSocketServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SocketJsonRpcClientTransportTest {
+
+    private JsonRpcExecutor executor;
+    private ExecutorService workers;
+    private JsonRpcSocketServer server;
+    private SocketJsonRpcClientTransport transport;
+    private CountDownLatch pinged;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        pinged = new CountDownLatch(1);
+        executor = new JsonRpcExecutor();
+        executor.addHandler("socket", new SocketService() {
+            public int add(int a, int b) {
+                return a + b;
+            }
+
+            public CompletableFuture<Integer> delayed(int value, int millis) {
+                return CompletableFuture.supplyAsync(() -> value,
+                        CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+            }
+
+            public void ping() {
+                pinged.countDown();
+            }
+
+            public String echo(String value) {
+                return value;
+            }
+        }, SocketService.class);
+
+        workers = Executors.newFixedThreadPool(4);
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server = new JsonRpcSocketServer(executor, channel, workers);
+        server.start();
+
+        transport = new SocketJsonRpcClientTransport(channel.getLocalAddress());
+        transport.setRequestTimeout(10, TimeUnit.SECONDS);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        transport.close();
+        server.close();
+        workers.shutdown();
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        SocketService service = new JsonRpcInvoker().get(transport, "socket", SocketService.class);
+
+        assertEquals(service.add(1, 2), 3);
+
+        // answered out of order over the same connection
+        CompletableFuture<Integer> slow = service.delayed(1, 300);
+        CompletableFuture<Integer> fast = service.delayed(2, 0);
+        assertEquals(fast.get(10, TimeUnit.SECONDS).intValue(), 2);
+        assertTrue(!slow.isDone());
+        assertEquals(slow.get(10, TimeUnit.SECONDS).intValue(), 1);
+
+        service.ping();
+        assertTrue(pinged.await(10, TimeUnit.SECONDS));
+        assertEquals(service.add(3, 4), 7);
+
+        // frames larger than the read buffer and the socket buffers
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 4 * 1024 * 1024) {
+            large.append("0123456789\u00e9");
+        }
+        assertEquals(service.echo(large.toString()), large.toString());
+    }
+
+    @Test
+    public void testConnectionClosed() throws Exception {
+        SocketService service = new JsonRpcInvoker().get(transport, "socket", SocketService.class);
+        CompletableFuture<Integer> pending = service.delayed(1, 5000);
+
+        server.close();
+        try {
+            pending.get(10, TimeUnit.SECONDS);
+            fail("should fail once the connection is closed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof JsonRpcClientException);
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        JsonRpcSocketServer saturated = new JsonRpcSocketServer(executor, channel, new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("saturated");
+            }
+        });
+        saturated.start();
+
+        SocketJsonRpcClientTransport rejected = new SocketJsonRpcClientTransport(channel.getLocalAddress());
+        rejected.setRequestTimeout(10, TimeUnit.SECONDS);
+        try {
+            SocketService service = new JsonRpcInvoker().get(rejected, "socket", SocketService.class);
+            service.add(1, 2);
+            fail("should be answered with an internal error");
+        } catch (JsonRpcRemoteException e) {
+            assertEquals(e.getCode().intValue(), JsonRpcErrorCodes.INTERNAL_ERROR_CODE);
+        } finally {
+            rejected.close();
+            saturated.close();
+        }
+    }
+
+    @Test
+    public void testResponseWithoutId() throws Exception {
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread server = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    SocketChannel connection = channel.accept();
+                    JsonRpcFraming.read(connection);
+                    JsonRpcFraming.write(connection,
+                            "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32700,\"message\":\"parse error\"}}");
+                } catch (Exception e) {
+                    // the test fails on the client side
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        SocketJsonRpcClientTransport unanswered = new SocketJsonRpcClientTransport(channel.getLocalAddress());
+        try {
+            SocketService service = new JsonRpcInvoker().get(unanswered, "socket", SocketService.class);
+            CompletableFuture<Integer> pending = service.delayed(1, 0);
+            try {
+                pending.get(10, TimeUnit.SECONDS);
+                fail("should fail with the error without id");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JsonRpcRemoteException);
+                assertEquals(((JsonRpcRemoteException) e.getCause()).getCode().intValue(),
+                        JsonRpcErrorCodes.PARSE_ERROR_CODE);
+            }
+        } finally {
+            unanswered.close();
+            channel.close();
+        }
+    }
+
+    public static interface SocketService {
+        int add(int a, int b);
+
+        CompletableFuture<Integer> delayed(int value, int millis);
+
+        @JsonRpcNotification
+        void ping();
+
+        String echo(String value);
+    }
+}
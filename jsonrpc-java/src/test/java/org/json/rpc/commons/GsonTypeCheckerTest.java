@@ -20,6 +20,9 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +30,9 @@ import java.util.Set;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class GsonTypeCheckerTest {
 
@@ -202,6 +207,124 @@ public class GsonTypeCheckerTest {
         assertFalse(typeChecker.isValidType(clazz, true));
     }
 
+    static interface InvalidInterface {
+        FinalFields get();
+    }
+
+    @Test
+    public void testCachedValidation() {
+        String message = null;
+        for (int i = 0; i < 2; i++) {
+            assertFalse(typeChecker.isValidType(FinalFields.class));
+            try {
+                typeChecker.isValidType(FinalFields.class, true);
+                fail("should throw exception");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("final field found"));
+                message = (message == null ? e.getMessage() : message);
+                assertEquals(e.getMessage(), message);
+            }
+        }
+
+        for (int i = 0; i < 2; i++) {
+            assertFalse(typeChecker.isValidInterface(InvalidInterface.class));
+            try {
+                typeChecker.isValidInterface(InvalidInterface.class, true);
+                fail("should throw exception");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("invalid method"));
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        }
+        assertTrue(new GsonTypeChecker().isValidType(CyclicClass.class, true));
+    }
+
+    @Test
+    public void testCachedPerCheckerClass() {
+        TypeChecker lenient = new GsonTypeChecker() {
+            @Override
+            public boolean isValidType(Class<?> clazz, boolean throwException) {
+                return clazz == FinalFields.class || super.isValidType(clazz, throwException);
+            }
+        };
+
+        assertFalse(typeChecker.isValidInterface(InvalidInterface.class));
+        assertTrue(lenient.isValidInterface(InvalidInterface.class));
+        assertFalse(new GsonTypeChecker().isValidInterface(InvalidInterface.class));
+    }
+
+    public static class IsolatedChecker extends GsonTypeChecker {
+    }
+
+    @Test
+    public void testCheckerClassLoaderCollected() throws Exception {
+        WeakReference<ClassLoader> loader = validateIsolated();
+        for (int i = 0; i < 100 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loader.get(), "validations hold the checker's class loader");
+    }
+
+    /**
+     * Validates JDK types with a checker class of its own class loader.
+     */
+    private static WeakReference<ClassLoader> validateIsolated() throws Exception {
+        ClassLoader loader = new IsolatingClassLoader(IsolatedChecker.class);
+        TypeChecker checker = (TypeChecker) loader.loadClass(IsolatedChecker.class.getName())
+                .getDeclaredConstructor().newInstance();
+        assertTrue(checker.getClass() != IsolatedChecker.class);
+        assertTrue(checker.isValidType(String.class));
+        assertTrue(checker.isValidType(Integer.class));
+        assertFalse(checker.isValidType(List.class));
+        assertTrue(checker.isValidInterface(Runnable.class));
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /**
+     * Defines the given class itself, everything else comes from the parent.
+     */
+    private static final class IsolatingClassLoader extends ClassLoader {
+
+        private final String name;
+
+        IsolatingClassLoader(Class<?> clazz) {
+            super(clazz.getClassLoader());
+            this.name = clazz.getName();
+        }
+
+        @Override
+        protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+            if (!className.equals(name)) {
+                return super.loadClass(className, resolve);
+            }
+            synchronized (getClassLoadingLock(className)) {
+                Class<?> c = findLoadedClass(className);
+                if (c == null) {
+                    byte[] bytes = readClass(className);
+                    c = defineClass(className, bytes, 0, bytes.length);
+                }
+                return c;
+            }
+        }
+
+        private byte[] readClass(String className) throws ClassNotFoundException {
+            InputStream in = getParent().getResourceAsStream(className.replace('.', '/') + ".class");
+            if (in == null) {
+                throw new ClassNotFoundException(className);
+            }
+            try {
+                try {
+                    return in.readAllBytes();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(className, e);
+            }
+        }
+    }
+
     @DataProvider
     public Object[][] typeNames() {
         return new Object[][]{
@@ -0,0 +1,97 @@
+package org.json.rpc.commons;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class JsonRpcCodecTest {
+
+    @DataProvider
+    public Object[][] codecs() {
+        return new Object[][]{
+                {JsonRpcCodecs.CBOR}, //
+                {JsonRpcCodecs.MESSAGE_PACK}, //
+        };
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(JsonRpcCodec codec) throws Exception {
+        JsonObject message = (JsonObject) new JsonParser().parse("{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"calc.add\","
+                + "\"params\":[0,1,-1,23,24,-24,-25,127,128,255,256,-32,-33,-128,-129,65535,65536,-32768,-32769,"
+                + "4294967295,4294967296,-2147483649,9223372036854775807,-9223372036854775808,"
+                + "1.5,0.1,-2.75e-300,1e300,true,false,null,\"\",\"caf\\u00e9\",{\"nested\":[[],{}]}]}");
+
+        JsonArray params = message.getAsJsonArray("params");
+        params.add(new JsonPrimitive(repeat('x', 31)));
+        params.add(new JsonPrimitive(repeat('y', 300)));
+        params.add(new JsonPrimitive(repeat('z', 70000)));
+        JsonArray large = new JsonArray();
+        for (int i = 0; i < 70000; i++) {
+            large.add(new JsonPrimitive(i));
+        }
+        params.add(large);
+
+        assertEquals(roundTrip(codec, message), message);
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        JsonElement message = new JsonParser().parse("{\"a\":[1,-1,\"b\"]}");
+
+        assertEquals(encode(JsonRpcCodecs.CBOR, message),
+                new byte[]{(byte) 0xa1, 0x61, 'a', (byte) 0x83, 0x01, 0x20, 0x61, 'b'});
+        assertEquals(encode(JsonRpcCodecs.MESSAGE_PACK, message),
+                new byte[]{(byte) 0x81, (byte) 0xa1, 'a', (byte) 0x93, 0x01, (byte) 0xff, (byte) 0xa1, 'b'});
+    }
+
+    @Test
+    public void testCborIndefiniteLength() throws Exception {
+        // [_ "a", {_ "b": 1}] with "a" in an indefinite length text string
+        byte[] data = {(byte) 0x9f, 0x7f, 0x61, 'a', (byte) 0xff, (byte) 0xbf, 0x61, 'b', 0x01, (byte) 0xff, (byte) 0xff};
+        assertEquals(JsonRpcCodecs.CBOR.decode(new ByteArrayInputStream(data)), new JsonParser().parse("[\"a\",{\"b\":1}]"));
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals(JsonRpcCodecs.forContentType(JsonRpcCodecs.defaults(), "application/cbor; charset=binary"),
+                JsonRpcCodecs.CBOR);
+        assertNull(JsonRpcCodecs.forContentType(JsonRpcCodecs.defaults(), "application/json"));
+        assertNull(JsonRpcCodecs.forContentType(JsonRpcCodecs.defaults(), null));
+
+        assertNull(JsonRpcCodecs.negotiate(JsonRpcCodecs.defaults(), null, null));
+        assertEquals(JsonRpcCodecs.negotiate(JsonRpcCodecs.defaults(), null, JsonRpcCodecs.CBOR), JsonRpcCodecs.CBOR);
+        assertEquals(JsonRpcCodecs.negotiate(JsonRpcCodecs.defaults(), "*/*", JsonRpcCodecs.CBOR), JsonRpcCodecs.CBOR);
+        assertEquals(JsonRpcCodecs.negotiate(JsonRpcCodecs.defaults(), "application/msgpack, application/json", null),
+                JsonRpcCodecs.MESSAGE_PACK);
+        assertNull(JsonRpcCodecs.negotiate(JsonRpcCodecs.defaults(), "application/json, application/cbor", JsonRpcCodecs.CBOR));
+        assertNull(JsonRpcCodecs.negotiate(Collections.<JsonRpcCodec>emptyList(), "application/cbor", null));
+    }
+
+    private static JsonElement roundTrip(JsonRpcCodec codec, JsonElement message) throws Exception {
+        return codec.decode(new ByteArrayInputStream(encode(codec, message)));
+    }
+
+    private static byte[] encode(JsonRpcCodec codec, JsonElement message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(message, out);
+        return out.toByteArray();
+    }
+
+    private static String repeat(char c, int n) {
+        char[] chars = new char[n];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
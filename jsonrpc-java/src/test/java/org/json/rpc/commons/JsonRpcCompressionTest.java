@@ -0,0 +1,70 @@
+package org.json.rpc.commons;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class JsonRpcCompressionTest {
+
+    @Test
+    public void testNegotiate() {
+        assertNull(JsonRpcCompression.negotiate(null));
+        assertNull(JsonRpcCompression.negotiate("identity"));
+        assertNull(JsonRpcCompression.negotiate("br, zstd"));
+        assertEquals(JsonRpcCompression.negotiate("gzip"), "gzip");
+        assertEquals(JsonRpcCompression.negotiate("deflate, gzip"), "gzip");
+        assertEquals(JsonRpcCompression.negotiate("gzip;q=0.5, deflate"), "deflate");
+        assertEquals(JsonRpcCompression.negotiate("*"), "gzip");
+        assertEquals(JsonRpcCompression.negotiate("gzip;q=0, *"), "deflate");
+        assertNull(JsonRpcCompression.negotiate("gzip;q=0, deflate;q=0"));
+    }
+
+    @DataProvider
+    public Object[][] codings() {
+        return new Object[][]{
+                {JsonRpcCompression.GZIP}, //
+                {JsonRpcCompression.DEFLATE}, //
+        };
+    }
+
+    @Test(dataProvider = "codings")
+    public void testRoundTrip(String coding) throws Exception {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'a');
+        byte[] data = new String(chars).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        OutputStream out = JsonRpcCompression.compress(bos, coding);
+        out.write(data);
+        out.close();
+        assertTrue(bos.size() < data.length / 10);
+
+        InputStream in = JsonRpcCompression.decompress(new ByteArrayInputStream(bos.toByteArray()), coding);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buff = new byte[1024];
+        int n;
+        while ((n = in.read(buff)) > 0) {
+            result.write(buff, 0, n);
+        }
+        assertEquals(result.toByteArray(), data);
+    }
+
+    @Test
+    public void testSupported() {
+        assertTrue(JsonRpcCompression.isSupported(null));
+        assertTrue(JsonRpcCompression.isSupported("identity"));
+        assertTrue(JsonRpcCompression.isSupported("x-gzip"));
+        assertFalse(JsonRpcCompression.isSupported("br"));
+    }
+}
@@ -1,12 +1,46 @@
 package org.json.rpc.server;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.rpc.client.JsonRpcClientCodecTransport;
 import org.json.rpc.client.JsonRpcClientTransport;
 import org.json.rpc.client.JsonRpcInvoker;
+import org.json.rpc.commons.JsonRpcCacheable;
+import org.json.rpc.commons.JsonRpcCodec;
+import org.json.rpc.commons.JsonRpcCodecs;
+import org.json.rpc.commons.JsonRpcErrorCodes;
+import org.json.rpc.commons.JsonRpcException;
+import org.json.rpc.commons.JsonRpcParam;
 import org.json.rpc.commons.JsonRpcRemoteException;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -18,12 +52,21 @@ import static org.testng.AssertJUnit.assertNull;
 public class JsonRpcExecutorTest {
 
     private JsonRpcExecutor executor;
+    private ExecutorService pool;
 
     @BeforeMethod
     public void setupMethod() {
         executor = new JsonRpcExecutor();
     }
 
+    @AfterMethod
+    public void teardownMethod() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
     @Test //Issue #6: Cyclic Reference if Custom Type is used more than once
     public void testIssue006_withDistinctEndPoint() throws Exception {
         CyclicReferenceBugImpl impl = new CyclicReferenceBugImpl() {
@@ -88,6 +131,654 @@ public class JsonRpcExecutorTest {
         }
     }
 
+    @Test
+    public void testMethodNotFound() throws Exception {
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        assertErrorCode(call("{\"id\":1,\"method\":\"impl.noSuchMethod\",\"params\":[]}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"noSuchHandle.getResult\",\"params\":[]}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"impl.getResult\",\"params\":[1]}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"getResult\",\"params\":[]}"),
+                JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+    }
+
+    @Test
+    public void testMethodFound() throws Exception {
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        JsonObject resp = call("{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]}");
+        assertNotNull(resp.get("result"));
+        assertNull(resp.get("error"));
+    }
+
+    @DataProvider
+    public Object[][] batchThreads() {
+        return new Object[][]{
+                {0}, //
+                {4}, //
+        };
+    }
+
+    @Test(dataProvider = "batchThreads")
+    public void testBatch(int batchThreads) throws Exception {
+        if (batchThreads > 0) {
+            pool = Executors.newFixedThreadPool(batchThreads);
+            executor.setBatchExecutor(pool);
+        }
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        JsonArray resp = (JsonArray) new JsonParser().parse(execute("["
+                + "{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]},"
+                + "{\"jsonrpc\":\"2.0\",\"method\":\"impl.getResult\",\"params\":[]},"
+                + "{\"id\":2,\"method\":\"impl.noSuchMethod\",\"params\":[]},"
+                + "1,"
+                + "{\"id\":\"3\",\"method\":\"system.listMethods\"}"
+                + "]"));
+
+        assertEquals(resp.size(), 4);
+        assertEquals(resp.get(0).getAsJsonObject().get("id").getAsInt(), 1);
+        assertNotNull(resp.get(0).getAsJsonObject().get("result"));
+        assertEquals(resp.get(1).getAsJsonObject().get("id").getAsInt(), 2);
+        assertErrorCode(resp.get(1).getAsJsonObject(), JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        assertTrue(resp.get(2).getAsJsonObject().get("id").isJsonNull());
+        assertErrorCode(resp.get(2).getAsJsonObject(), JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+        assertEquals(resp.get(3).getAsJsonObject().get("id").getAsString(), "3");
+        assertEquals(resp.get(3).getAsJsonObject().getAsJsonArray("result").size(), 3);
+    }
+
+    @Test
+    public void testBatchEmpty() throws Exception {
+        JsonObject resp = call("[]");
+        assertTrue(resp.get("id").isJsonNull());
+        assertErrorCode(resp, JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+    }
+
+    @Test
+    public void testBatchNotificationsOnly() throws Exception {
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        assertNull(execute("[{\"jsonrpc\":\"2.0\",\"method\":\"impl.getResult\",\"params\":[]}]"));
+    }
+
+    @DataProvider
+    public Object[][] invalidBatchRequests() {
+        return new Object[][]{
+                {"{\"foo\":\"boo\"}"}, //
+                {"{\"jsonrpc\":\"2.0\",\"method\":1,\"params\":\"bar\"}"}, //
+        };
+    }
+
+    @Test(dataProvider = "invalidBatchRequests")
+    public void testBatchInvalidWithoutId(String request) throws Exception {
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        JsonArray resp = (JsonArray) new JsonParser().parse(execute("[" + request + "]"));
+        assertEquals(resp.size(), 1);
+        assertTrue(resp.get(0).getAsJsonObject().get("id").isJsonNull());
+        assertErrorCode(resp.get(0).getAsJsonObject(), JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+    }
+
+    @Test
+    public void testNotification() throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        executor.addHandler("cached", new CachedHandler() {
+            public int next(int value) {
+                return invocations.incrementAndGet();
+            }
+
+            public int nextUncached(int value) {
+                return next(value);
+            }
+        }, CachedHandler.class);
+
+        assertNull(execute("{\"jsonrpc\":\"2.0\",\"method\":\"cached.nextUncached\",\"params\":[1]}"));
+        assertNull(execute("{\"jsonrpc\":\"2.0\",\"method\":\"cached.noSuchMethod\",\"params\":[1]}"));
+        assertEquals(invocations.get(), 1);
+
+        assertErrorCode(call("{\"jsonrpc\":\"2.0\",\"id\":null,\"method\":\"cached.noSuchMethod\"}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+    }
+
+    @Test
+    public void testFractionForIntParam() throws Exception {
+        executor.addHandler("cached", new CachedHandler() {
+            public int next(int value) {
+                return value + 1;
+            }
+
+            public int nextUncached(int value) {
+                return next(value);
+            }
+        }, CachedHandler.class);
+
+        assertEquals(call("{\"id\":1,\"method\":\"cached.nextUncached\",\"params\":[2.0]}")
+                .get("result").getAsInt(), 3);
+        JsonObject resp = call("{\"id\":1,\"method\":\"cached.nextUncached\",\"params\":[1.5]}");
+        assertErrorCode(resp, JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE);
+        assertNull(resp.getAsJsonObject("error").get("data"));
+    }
+
+    @Test
+    public void testInvalidWithoutId() throws Exception {
+        final String request = "{\"jsonrpc\":\"2.0\",\"params\":[1]}";
+        JsonObject resp = call(request);
+        assertTrue(resp.get("id").isJsonNull());
+        assertErrorCode(resp, JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+
+        final StringBuilder response = new StringBuilder();
+        executor.executeAsync(new JsonRpcServerTransport() {
+            public String readRequest() throws Exception {
+                return request;
+            }
+
+            public void writeResponse(String responseData) throws Exception {
+                response.append(responseData);
+            }
+        }, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        resp = (JsonObject) new JsonParser().parse(response.toString());
+        assertTrue(resp.get("id").isJsonNull());
+        assertErrorCode(resp, JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+    }
+
+    @Test
+    public void testFutureResult() throws Exception {
+        final CompletableFuture<Integer> pending = new CompletableFuture<Integer>();
+        executor.addHandler("async", new AsyncHandler() {
+            public CompletableFuture<Integer> get(int value) {
+                return (value == 0 ? pending : CompletableFuture.completedFuture(value));
+            }
+        }, AsyncHandler.class);
+
+        JsonObject resp = call("{\"id\":1,\"method\":\"async.get\",\"params\":[5]}");
+        assertEquals(resp.get("result").getAsInt(), 5);
+
+        pool = Executors.newSingleThreadExecutor();
+        final StringBuilder response = new StringBuilder();
+        CompletableFuture<Void> done = executor.executeAsync(new JsonRpcServerTransport() {
+            public String readRequest() throws Exception {
+                return "[{\"id\":1,\"method\":\"async.get\",\"params\":[0]},"
+                        + "{\"id\":2,\"method\":\"async.get\",\"params\":[2]}]";
+            }
+
+            public void writeResponse(String responseData) throws Exception {
+                response.append(responseData);
+            }
+        }, pool);
+
+        Thread.sleep(50);
+        assertFalse(done.isDone());
+        pending.complete(7);
+        done.get(10, TimeUnit.SECONDS);
+
+        JsonArray batch = (JsonArray) new JsonParser().parse(response.toString());
+        assertEquals(batch.get(0).getAsJsonObject().get("result").getAsInt(), 7);
+        assertEquals(batch.get(1).getAsJsonObject().get("result").getAsInt(), 2);
+    }
+
+    @Test
+    public void testFutureError() throws Exception {
+        executor.addHandler("async", new AsyncHandler() {
+            public CompletableFuture<Integer> get(int value) {
+                CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+                future.completeExceptionally(new IllegalStateException("failed in future"));
+                return future;
+            }
+        }, AsyncHandler.class);
+
+        JsonObject resp = call("{\"id\":1,\"method\":\"async.get\",\"params\":[5]}");
+        assertErrorCode(resp, JsonRpcErrorCodes.getServerError(0));
+        assertTrue(resp.getAsJsonObject("error").get("message").getAsString().indexOf("failed in future") > 0);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        executor.setMetrics(new MicrometerJsonRpcMetrics(registry));
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+        executor.addHandler("async", new AsyncHandler() {
+            public CompletableFuture<Integer> get(int value) {
+                CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+                future.completeExceptionally(new IllegalStateException("failed in future"));
+                return future;
+            }
+        }, AsyncHandler.class);
+
+        String request = "{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]}";
+        String response = execute(request);
+        call(request);
+        call("{\"id\":1,\"method\":\"impl.noSuchMethod\",\"params\":[]}");
+        call("{\"id\":1,\"method\":\"impl.getResult\",\"params\":[1, 2]}");
+        call("{\"id\":1,\"method\":\"async.get\",\"params\":[5]}");
+
+        assertEquals(registry.get("jsonrpc.calls").tag("method", "impl.getResult").counter().count(), 2.0);
+        assertEquals(registry.get("jsonrpc.calls").tag("method", JsonRpcMetrics.UNKNOWN_METHOD).counter().count(), 2.0);
+        assertEquals(registry.get("jsonrpc.errors").tag("method", JsonRpcMetrics.UNKNOWN_METHOD)
+                .tag("code", String.valueOf(JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE)).counter().count(), 2.0);
+        assertEquals(registry.get("jsonrpc.errors").tag("method", "async.get")
+                .tag("code", "server").counter().count(), 1.0);
+
+        for (JsonRpcMetrics.Phase phase : JsonRpcMetrics.Phase.values()) {
+            Timer timer = registry.get("jsonrpc.latency").tag("method", "impl.getResult")
+                    .tag("phase", phase.name().toLowerCase()).timer();
+            assertEquals(timer.count(), 2L, phase.name());
+        }
+
+        DistributionSummary requestSize = registry.get("jsonrpc.request.size").tag("method", "impl.getResult").summary();
+        assertEquals(requestSize.totalAmount(), 2.0 * request.length());
+        DistributionSummary responseSize = registry.get("jsonrpc.response.size").tag("method", "impl.getResult").summary();
+        assertEquals(responseSize.totalAmount(), 2.0 * response.length());
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        executor.addHandler("cached", new CachedHandler() {
+            public int next(int value) {
+                return value + invocations.incrementAndGet();
+            }
+
+            public int nextUncached(int value) {
+                return next(value);
+            }
+        }, CachedHandler.class);
+        executor.setResultCache("cached.nextUncached", 10, 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(call("{\"id\":1,\"method\":\"cached.next\",\"params\":[1]}").get("result").getAsInt(), 2);
+        JsonObject resp = call("{\"id\":2,\"method\":\"cached.next\",\"params\":[ 1 ]}");
+        assertEquals(resp.get("id").getAsInt(), 2);
+        assertEquals(resp.get("result").getAsInt(), 2);
+        assertEquals(invocations.get(), 1);
+
+        assertEquals(call("{\"id\":1,\"method\":\"cached.next\",\"params\":[2]}").get("result").getAsInt(), 4);
+        assertEquals(invocations.get(), 2);
+
+        assertEquals(call("{\"id\":1,\"method\":\"cached.nextUncached\",\"params\":[1]}").get("result").getAsInt(), 4);
+        assertEquals(call("{\"id\":1,\"method\":\"cached.nextUncached\",\"params\":[1]}").get("result").getAsInt(), 4);
+        assertEquals(invocations.get(), 3);
+
+        Thread.sleep(100);
+        assertEquals(call("{\"id\":1,\"method\":\"cached.nextUncached\",\"params\":[1]}").get("result").getAsInt(), 5);
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        executor.addHandler("cached", new CachedHandler() {
+            public int next(int value) {
+                return value * 2;
+            }
+
+            public int nextUncached(int value) {
+                return next(value);
+            }
+        }, CachedHandler.class);
+
+        final JsonRpcCodec codec = JsonRpcCodecs.CBOR;
+        final ByteArrayOutputStream lastResponse = new ByteArrayOutputStream();
+        JsonRpcClientCodecTransport transport = new JsonRpcClientCodecTransport() {
+            public JsonRpcCodec getCodec() {
+                return codec;
+            }
+
+            public JsonElement callTree(JsonElement request) throws Exception {
+                ByteArrayOutputStream req = new ByteArrayOutputStream();
+                codec.encode(request, req);
+                CodecTransport transport = new CodecTransport(codec, req.toByteArray(), codec);
+                executor.execute(transport);
+                lastResponse.reset();
+                lastResponse.write(transport.response.toByteArray());
+                return codec.decode(new ByteArrayInputStream(lastResponse.toByteArray()));
+            }
+
+            public String call(String requestData) {
+                return execute(requestData);
+            }
+        };
+
+        CachedHandler handler = new JsonRpcInvoker().get(transport, "cached", CachedHandler.class);
+        assertEquals(handler.next(21), 42);
+        assertEquals(handler.nextUncached(-3), -6);
+        // a CBOR map, not JSON text
+        assertEquals(lastResponse.toByteArray()[0] & 0xe0, 0xa0);
+
+        // MessagePack request, answered in JSON text
+        JsonObject req = (JsonObject) new JsonParser().parse("{\"id\":1,\"method\":\"cached.next\",\"params\":[4]}");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonRpcCodecs.MESSAGE_PACK.encode(req, bos);
+        CodecTransport msgpack = new CodecTransport(JsonRpcCodecs.MESSAGE_PACK, bos.toByteArray(), null);
+        executor.execute(msgpack);
+        assertEquals(new JsonParser().parse(msgpack.responseData).getAsJsonObject().get("result").getAsInt(), 8);
+    }
+
+    private static final class CodecTransport implements JsonRpcServerCodecTransport {
+
+        private final JsonRpcCodec requestCodec;
+        private final byte[] request;
+        private final JsonRpcCodec responseCodec;
+
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        String responseData;
+
+        CodecTransport(JsonRpcCodec requestCodec, byte[] request, JsonRpcCodec responseCodec) {
+            this.requestCodec = requestCodec;
+            this.request = request;
+            this.responseCodec = responseCodec;
+        }
+
+        public JsonRpcCodec getRequestCodec() {
+            return requestCodec;
+        }
+
+        public InputStream getRequestStream() {
+            return new ByteArrayInputStream(request);
+        }
+
+        public JsonRpcCodec getResponseCodec() {
+            return responseCodec;
+        }
+
+        public OutputStream getResponseStream() {
+            return response;
+        }
+
+        public String readRequest() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void writeResponse(String responseData) {
+            this.responseData = responseData;
+        }
+    }
+
+    public static interface CachedHandler {
+        @JsonRpcCacheable
+        int next(int value);
+
+        int nextUncached(int value);
+    }
+
+    public static interface OverloadedHandler {
+        String describe(int value);
+
+        String describe(double value);
+
+        String describe(String value);
+
+        String describe(boolean value);
+
+        String describe(int[] values);
+
+        String describe(String name, int value);
+
+        String describe(int value, String name);
+    }
+
+    public static interface NamedHandler {
+        String greet(@JsonRpcParam("name") String name, @JsonRpcParam("times") int times);
+
+        String greet(@JsonRpcParam("times") int[] times);
+    }
+
+    public static interface DuplicateNameHandler {
+        int add(@JsonRpcParam("x") int x, @JsonRpcParam("x") int y);
+    }
+
+    public static interface AsyncHandler {
+        CompletableFuture<Integer> get(int value);
+    }
+
+    @DataProvider
+    public Object[][] streamResponses() {
+        return new Object[][]{
+                {false}, //
+                {true}, //
+        };
+    }
+
+    @Test(dataProvider = "streamResponses")
+    public void testStreamTransport(boolean streamResponses) throws Exception {
+        executor.setStreamResponses(streamResponses);
+        executor.addHandler("impl", new CyclicReferenceBugImpl(), CyclicReferenceBug.class);
+
+        final StringBuilder response = new StringBuilder();
+        final StringWriter streamed = new StringWriter();
+        executor.execute(new JsonRpcServerStreamTransport() {
+            public Reader getRequestReader() throws Exception {
+                return new StringReader("{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]}");
+            }
+
+            public Writer getResponseWriter() throws Exception {
+                return streamed;
+            }
+
+            public String readRequest() throws Exception {
+                throw new AssertionError("request should be read as a stream");
+            }
+
+            public void writeResponse(String responseData) throws Exception {
+                response.append(responseData);
+            }
+        });
+
+        if (streamResponses) {
+            assertEquals(response.length(), 0);
+            response.append(streamed);
+        } else {
+            assertEquals(streamed.getBuffer().length(), 0);
+        }
+
+        JsonObject resp = (JsonObject) new JsonParser().parse(response.toString());
+        assertEquals(resp.get("id").getAsInt(), 1);
+        assertNotNull(resp.get("result"));
+        assertNull(resp.get("error"));
+    }
+
+    @DataProvider
+    public Object[][] invocationEngines() {
+        return new Object[][]{
+                {InvocationEngine.REFLECTIVE}, //
+                {InvocationEngine.METHOD_HANDLE}, //
+        };
+    }
+
+    @Test(dataProvider = "invocationEngines")
+    public void testInvocationEngine(InvocationEngine engine) throws Exception {
+        executor.setInvocationEngine(engine);
+        executor.addHandler("impl", new CyclicReferenceBugImpl() {
+            public CyclicResult getResult() {
+                throw new IllegalStateException("failed in handler");
+            }
+        }, CyclicReferenceBug.class);
+
+        JsonObject resp = call("{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]}");
+        assertErrorCode(resp, JsonRpcErrorCodes.getServerError(0));
+        assertTrue(resp.getAsJsonObject("error").get("message").getAsString().indexOf("failed in handler") > 0);
+
+        resp = call("{\"id\":1,\"method\":\"system.listMethods\",\"params\":[]}");
+        assertEquals(resp.getAsJsonArray("result").size(), 3);
+
+        try {
+            executor.setInvocationEngine(InvocationEngine.REFLECTIVE);
+            fail("executor should be locked");
+        } catch (JsonRpcException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testErrorDetail() throws Exception {
+        executor.addHandler("impl", new CyclicReferenceBugImpl() {
+            public CyclicResult getResult() {
+                throw new IllegalStateException("failed in handler", new IllegalArgumentException("cause"));
+            }
+        }, CyclicReferenceBug.class);
+        String request = "{\"id\":1,\"method\":\"impl.getResult\",\"params\":[]}";
+
+        JsonObject error = call(request).getAsJsonObject("error");
+        assertTrue(error.get("data").getAsString().indexOf("Caused by: java.lang.IllegalArgumentException: cause") > 0);
+
+        executor.setErrorDetail(JsonRpcErrorDetail.TRUNCATED);
+        error = call(request).getAsJsonObject("error");
+        assertEquals(error.get("message").getAsString(), "failed in handler");
+        String data = error.get("data").getAsString();
+        assertTrue(data.startsWith("java.lang.IllegalStateException: failed in handler\n"));
+        assertTrue(data.indexOf("Caused by: java.lang.IllegalArgumentException: cause") > 0);
+        assertTrue(data.indexOf(" more\n") > 0);
+
+        executor.setErrorDetail(JsonRpcErrorDetail.MESSAGE);
+        error = call(request).getAsJsonObject("error");
+        assertEquals(error.get("code").getAsInt(), JsonRpcErrorCodes.getServerError(0));
+        assertEquals(error.get("message").getAsString(), "failed in handler");
+        assertNull(error.get("data"));
+
+        executor.setErrorDetail(JsonRpcErrorDetail.NONE);
+        error = call(request).getAsJsonObject("error");
+        assertEquals(error.get("message").getAsString(), "server error");
+        assertNull(error.get("data"));
+
+        error = call("{\"id\":1,\"method\":\"impl.noSuchMethod\",\"params\":[]}").getAsJsonObject("error");
+        assertEquals(error.get("code").getAsInt(), JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        assertNull(error.get("data"));
+
+        assertErrorCode(call("{\"id\":1,\"method\":\"impl.getResult\",\"params\":1}"),
+                JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"params\":[]}"),
+                JsonRpcErrorCodes.INVALID_REQUEST_ERROR_CODE);
+    }
+
+    @Test
+    public void testOverloads() throws Exception {
+        executor.addHandler("overloaded", new OverloadedHandler() {
+            public String describe(int value) {
+                return "int";
+            }
+
+            public String describe(double value) {
+                return "double";
+            }
+
+            public String describe(String value) {
+                return "string";
+            }
+
+            public String describe(boolean value) {
+                return "boolean";
+            }
+
+            public String describe(int[] values) {
+                return "array";
+            }
+
+            public String describe(String name, int value) {
+                return "string,int";
+            }
+
+            public String describe(int value, String name) {
+                return "int,string";
+            }
+        }, OverloadedHandler.class);
+
+        assertEquals(describe("[1]"), "int");
+        assertEquals(describe("[1.5]"), "double");
+        assertEquals(describe("[1e3]"), "double");
+        assertEquals(describe("[\"x\"]"), "string");
+        assertEquals(describe("[true]"), "boolean");
+        assertEquals(describe("[[1,2]]"), "array");
+        assertEquals(describe("[\"x\",1]"), "string,int");
+        assertEquals(describe("[1,\"x\"]"), "int,string");
+        assertEquals(describe("[\"x\",2.0]"), "string,int");
+
+        // no overload takes an object
+        assertErrorCode(call("{\"id\":1,\"method\":\"overloaded.describe\",\"params\":[{}]}"),
+                JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"overloaded.describe\",\"params\":[1,2,3]}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+        // the parameters have no names without @JsonRpcParam or javac -parameters
+        assertErrorCode(call("{\"id\":1,\"method\":\"overloaded.describe\",\"params\":{\"value\":1}}"),
+                JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE);
+
+        Method method = OverloadedHandler.class.getMethod("describe", int.class);
+        assertTrue(executor.canExecute(method, (JsonArray) new JsonParser().parse("[1]")));
+        assertTrue(executor.canExecute(method, (JsonArray) new JsonParser().parse("[{}]")));
+        assertFalse(executor.canExecute(method, (JsonArray) new JsonParser().parse("[\"x\", 1]")));
+    }
+
+    private String describe(String params) {
+        JsonObject resp = call("{\"id\":1,\"method\":\"overloaded.describe\",\"params\":" + params + "}");
+        assertNull(resp.get("error"));
+        return resp.get("result").getAsString();
+    }
+
+    @Test
+    public void testNamedParams() throws Exception {
+        executor.addHandler("named", new NamedHandler() {
+            public String greet(String name, int times) {
+                return name + "x" + times;
+            }
+
+            public String greet(int[] times) {
+                return "x" + times.length;
+            }
+        }, NamedHandler.class);
+
+        JsonObject resp = call("{\"id\":1,\"method\":\"named.greet\",\"params\":{\"times\":2,\"name\":\"a\"}}");
+        assertEquals(resp.get("result").getAsString(), "ax2");
+        resp = call("{\"id\":1,\"method\":\"named.greet\",\"params\":{\"times\":3}}");
+        assertEquals(resp.get("result").getAsString(), "nullx3");
+        resp = call("{\"id\":1,\"method\":\"named.greet\",\"params\":{\"times\":[1,2]}}");
+        assertEquals(resp.get("result").getAsString(), "x2");
+        resp = call("{\"id\":1,\"method\":\"named.greet\",\"params\":[\"b\",1]}");
+        assertEquals(resp.get("result").getAsString(), "bx1");
+
+        assertErrorCode(call("{\"id\":1,\"method\":\"named.greet\",\"params\":{\"name\":\"a\"}}"),
+                JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"named.greet\",\"params\":{\"times\":1,\"other\":1}}"),
+                JsonRpcErrorCodes.INVALID_PARAMS_ERROR_CODE);
+        assertErrorCode(call("{\"id\":1,\"method\":\"named.other\",\"params\":{}}"),
+                JsonRpcErrorCodes.METHOD_NOT_FOUND_ERROR_CODE);
+
+        try {
+            new JsonRpcExecutor().addHandler("dup", new DuplicateNameHandler() {
+                public int add(int x, int y) {
+                    return x + y;
+                }
+            }, DuplicateNameHandler.class);
+            fail("duplicate parameter names should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private JsonObject call(String requestData) {
+        return (JsonObject) new JsonParser().parse(execute(requestData));
+    }
+
+    private String execute(final String requestData) {
+        final String[] response = new String[1];
+        executor.execute(new JsonRpcServerTransport() {
+            public String readRequest() throws Exception {
+                return requestData;
+            }
+
+            public void writeResponse(String responseData) throws Exception {
+                response[0] = responseData;
+            }
+        });
+        return response[0];
+    }
+
+    private static void assertErrorCode(JsonObject resp, int code) {
+        assertNull(resp.get("result"));
+        assertEquals(resp.getAsJsonObject("error").get("code").getAsInt(), code);
+    }
+
     private void testCycle(CyclicReferenceBugImpl impl, int a, int b, Integer refA, Integer refB) {
         executor.addHandler("impl", impl, CyclicReferenceBug.class);
 
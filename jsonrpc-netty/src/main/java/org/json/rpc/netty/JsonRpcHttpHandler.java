@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.CharsetUtil;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerStreamTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Handles the requests of a single connection. The request body is handed
+ * to the executor as a stream and decoded on the workers, so is the
+ * response encoded, the rest runs on the event loop of the connection, so
+ * the state here needs no synchronization.
+ * <p>
+ * Pipelined requests are numbered as they are read, responses completing
+ * out of order are held back until the ones before them have been written.
+ */
+class JsonRpcHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsonRpcHttpHandler.class);
+
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final JsonRpcExecutor executor;
+    private final Executor workers;
+    private final String path;
+    private final int maxPipelined;
+
+    private final Map<Long, Response> completed = new HashMap<Long, Response>();
+    private long nextRequest;
+    private long nextResponse;
+
+    JsonRpcHttpHandler(JsonRpcExecutor executor, Executor workers, String path, int maxPipelined) {
+        this.executor = executor;
+        this.workers = workers;
+        this.path = path;
+        this.maxPipelined = maxPipelined;
+    }
+
+    protected void channelRead0(final ChannelHandlerContext ctx, FullHttpRequest request) {
+        final long sequence = nextRequest++;
+        final boolean keepAlive = HttpUtil.isKeepAlive(request);
+
+        if (nextRequest - nextResponse >= maxPipelined) {
+            // too many outstanding, stop reading until some are answered
+            ctx.channel().config().setAutoRead(false);
+        }
+
+        if (!HttpMethod.POST.equals(request.method())) {
+            FullHttpResponse resp = emptyResponse(HttpResponseStatus.METHOD_NOT_ALLOWED);
+            resp.headers().set(HttpHeaderNames.ALLOW, HttpMethod.POST.name());
+            complete(ctx, sequence, new Response(resp, keepAlive));
+            return;
+        }
+        if (!path.equals(new QueryStringDecoder(request.uri()).path())) {
+            complete(ctx, sequence, new Response(emptyResponse(HttpResponseStatus.NOT_FOUND), keepAlive));
+            return;
+        }
+
+        // released by the request once executed, the handler releases its own reference
+        final RequestTransport transport = new RequestTransport(request.content().retain(), ctx.alloc());
+        executor.executeAsync(transport, workers).whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, final Throwable t) {
+                transport.release();
+                ctx.executor().execute(new Runnable() {
+                    public void run() {
+                        complete(ctx, sequence, new Response(toHttpResponse(transport, t), keepAlive));
+                    }
+                });
+            }
+        });
+    }
+
+    private static FullHttpResponse toHttpResponse(RequestTransport transport, Throwable t) {
+        ByteBuf content = transport.response;
+        if (t != null) {
+            if (content != null) {
+                content.release();
+            }
+            if (t instanceof RejectedExecutionException) {
+                return emptyResponse(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            }
+            if (LOG.isErrorEnabled()) {
+                LOG.error("unable to execute request", t);
+            }
+            return emptyResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        if (content == null) {
+            // notifications are not answered
+            return emptyResponse(HttpResponseStatus.NO_CONTENT);
+        }
+
+        FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+        resp.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        return resp;
+    }
+
+    private void complete(ChannelHandlerContext ctx, long sequence, Response response) {
+        if (!ctx.channel().isActive()) {
+            response.resp.release();
+            return;
+        }
+
+        completed.put(sequence, response);
+
+        boolean written = false;
+        Response next;
+        while ((next = completed.remove(nextResponse)) != null) {
+            nextResponse++;
+            if (next.keepAlive) {
+                next.resp.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+                ctx.write(next.resp);
+            } else {
+                ctx.write(next.resp).addListener(ChannelFutureListener.CLOSE);
+            }
+            written = true;
+        }
+
+        if (written) {
+            ctx.flush();
+            if (!ctx.channel().config().isAutoRead() && nextRequest - nextResponse < maxPipelined) {
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+    }
+
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (Response response : completed.values()) {
+            response.resp.release();
+        }
+        completed.clear();
+        super.channelInactive(ctx);
+    }
+
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOG.debug("connection failed", cause);
+        ctx.close();
+    }
+
+    private static FullHttpResponse emptyResponse(HttpResponseStatus status) {
+        FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+        resp.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        return resp;
+    }
+
+    private static final class Response {
+        final FullHttpResponse resp;
+        final boolean keepAlive;
+
+        Response(FullHttpResponse resp, boolean keepAlive) {
+            this.resp = resp;
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    /**
+     * Reads the request straight from the received buffer and writes the
+     * response into a buffer of the connection's allocator, on the worker
+     * executing the request. The response is kept for the event loop to
+     * write.
+     */
+    private static final class RequestTransport implements JsonRpcServerStreamTransport {
+
+        private final ByteBuf request;
+        private final ByteBufAllocator alloc;
+        private volatile ByteBuf response;
+
+        RequestTransport(ByteBuf request, ByteBufAllocator alloc) {
+            this.request = request;
+            this.alloc = alloc;
+        }
+
+        public String readRequest() {
+            return request.toString(CharsetUtil.UTF_8);
+        }
+
+        public Reader getRequestReader() {
+            return new InputStreamReader(new ByteBufInputStream(request.duplicate()), CharsetUtil.UTF_8);
+        }
+
+        public void writeResponse(String responseData) {
+            response = ByteBufUtil.writeUtf8(alloc, responseData);
+        }
+
+        public Writer getResponseWriter() {
+            ByteBuf buf = alloc.buffer();
+            response = buf;
+            return new OutputStreamWriter(new ByteBufOutputStream(buf), CharsetUtil.UTF_8);
+        }
+
+        void release() {
+            request.release();
+        }
+    }
+}
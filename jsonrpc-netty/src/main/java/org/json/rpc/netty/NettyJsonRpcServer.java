@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.json.rpc.commons.JsonRpcCompression;
+import org.json.rpc.commons.JsonRpcException;
+import org.json.rpc.server.JsonRpcExecutor;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a {@link JsonRpcExecutor} over HTTP/1.1 without a servlet
+ * container, on a Netty event loop.
+ * <p>
+ * The event loop threads only do the network I/O, they read the request
+ * body into pooled (direct) buffers and hand it over to the worker
+ * executor, e.g. a bounded pool or
+ * <code>Executors.newVirtualThreadPerTaskExecutor()</code>, so that slow
+ * handlers never block other connections. The workers parse the request
+ * straight from the buffer, and with
+ * {@link JsonRpcExecutor#setStreamResponses(boolean)} serialize the response
+ * straight into a pooled buffer. Connections are kept alive, and
+ * pipelined requests are executed concurrently while their responses are
+ * still written in request order. Request and response bodies are
+ * compressed with <code>gzip</code> or <code>deflate</code> as negotiated
+ * through the HTTP headers.
+ * <pre>
+ * NettyJsonRpcServer server = new NettyJsonRpcServer(executor, new InetSocketAddress(8080), workers);
+ * server.setPath("/jsonrpc");
+ * server.start();
+ * </pre>
+ */
+public class NettyJsonRpcServer implements Closeable {
+
+    public static final String DEFAULT_PATH = "/";
+    public static final int DEFAULT_MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_PIPELINED = 64;
+
+    private static final long SHUTDOWN_TIMEOUT = 5;
+
+    private final JsonRpcExecutor executor;
+    private final SocketAddress address;
+    private final Executor workers;
+
+    private String path = DEFAULT_PATH;
+    private int maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+    private int maxPipelined = DEFAULT_MAX_PIPELINED;
+    private int ioThreads;
+    private int compressionThreshold = JsonRpcCompression.DEFAULT_THRESHOLD;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+
+    public NettyJsonRpcServer(JsonRpcExecutor executor, SocketAddress address, Executor workers) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        if (workers == null) {
+            throw new NullPointerException("workers");
+        }
+        this.executor = executor;
+        this.address = address;
+        this.workers = workers;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Requests to any other path are answered with <code>404</code>,
+     * <code>"/"</code> by default.
+     */
+    public void setPath(String path) {
+        if (path == null) {
+            throw new NullPointerException("path");
+        }
+        checkNotStarted();
+        this.path = path;
+    }
+
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Larger request bodies are answered with <code>413</code> without
+     * being read, 16MB by default.
+     */
+    public void setMaxContentLength(int maxContentLength) {
+        if (maxContentLength < 1) {
+            throw new IllegalArgumentException("maxContentLength should be at least 1 : " + maxContentLength);
+        }
+        checkNotStarted();
+        this.maxContentLength = maxContentLength;
+    }
+
+    public int getMaxPipelined() {
+        return maxPipelined;
+    }
+
+    /**
+     * Reading from a connection is paused while this many of its requests
+     * are being executed, 64 by default.
+     */
+    public void setMaxPipelined(int maxPipelined) {
+        if (maxPipelined < 1) {
+            throw new IllegalArgumentException("maxPipelined should be at least 1 : " + maxPipelined);
+        }
+        checkNotStarted();
+        this.maxPipelined = maxPipelined;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Number of event loop threads, <code>0</code> (the default) leaves it
+     * to Netty, twice the number of cores.
+     */
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads < 0) {
+            throw new IllegalArgumentException("ioThreads should not be negative : " + ioThreads);
+        }
+        checkNotStarted();
+        this.ioThreads = ioThreads;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Responses smaller than this many bytes are not compressed,
+     * {@link JsonRpcCompression#DEFAULT_THRESHOLD} by default. A negative
+     * value turns response compression off.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        checkNotStarted();
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Binds the address and starts accepting connections on background
+     * threads.
+     *
+     * @throws InterruptedException if interrupted while binding
+     */
+    public synchronized void start() throws InterruptedException {
+        checkNotStarted();
+
+        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("jsonrpc-netty-boss", true));
+        workerGroup = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("jsonrpc-netty-io", true));
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        pipeline.addLast(new HttpServerCodec());
+                        if (compressionThreshold >= 0) {
+                            pipeline.addLast(new HttpContentCompressor(compressionThreshold,
+                                    StandardCompressionOptions.gzip(), StandardCompressionOptions.deflate()));
+                        }
+                        pipeline.addLast(new HttpContentDecompressor());
+                        pipeline.addLast(new HttpServerExpectContinueHandler());
+                        pipeline.addLast(new HttpObjectAggregator(maxContentLength));
+                        pipeline.addLast(new JsonRpcHttpHandler(executor, workers, path, maxPipelined));
+                    }
+                });
+
+        try {
+            serverChannel = bootstrap.bind(address).sync().channel();
+        } catch (InterruptedException e) {
+            shutdown();
+            throw e;
+        } catch (RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the address the server is bound to, e.g. to find out the port
+     *         when bound to port <code>0</code>
+     */
+    public synchronized SocketAddress getLocalAddress() {
+        return (serverChannel == null ? null : serverChannel.localAddress());
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones, the worker
+     * executor is left to the caller.
+     */
+    public synchronized void close() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        shutdown();
+    }
+
+    private void shutdown() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        serverChannel = null;
+        bossGroup = null;
+        workerGroup = null;
+    }
+
+    private void checkNotStarted() {
+        if (bossGroup != null) {
+            throw new JsonRpcException("server has been started, no configuration changes are allowed");
+        }
+    }
+}
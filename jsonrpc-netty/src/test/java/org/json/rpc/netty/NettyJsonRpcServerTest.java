@@ -0,0 +1,202 @@
+package org.json.rpc.netty;
+
+import org.json.rpc.client.AsyncHttpJsonRpcClientTransport;
+import org.json.rpc.client.HttpJsonRpcClientTransport;
+import org.json.rpc.client.JsonRpcInvoker;
+import org.json.rpc.commons.JsonRpcNotification;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class NettyJsonRpcServerTest {
+
+    private JsonRpcExecutor executor;
+    private ExecutorService workers;
+    private NettyJsonRpcServer server;
+    private CountDownLatch pinged;
+    private int port;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        pinged = new CountDownLatch(1);
+        executor = new JsonRpcExecutor();
+        executor.addHandler("netty", new NettyService() {
+            public int add(int a, int b) {
+                return a + b;
+            }
+
+            public CompletableFuture<Integer> delayed(int value, int millis) {
+                return CompletableFuture.supplyAsync(() -> value,
+                        CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+            }
+
+            public void ping() {
+                pinged.countDown();
+            }
+
+            public String echo(String value) {
+                return value;
+            }
+        }, NettyService.class);
+
+        workers = Executors.newFixedThreadPool(4);
+        server = new NettyJsonRpcServer(executor, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), workers);
+        server.setPath("/jsonrpc");
+        server.setIoThreads(1);
+        server.start();
+        port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        server.close();
+        workers.shutdown();
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        HttpJsonRpcClientTransport transport = new HttpJsonRpcClientTransport(url("/jsonrpc"));
+        NettyService service = new JsonRpcInvoker().get(transport, "netty", NettyService.class);
+
+        assertEquals(service.add(1, 2), 3);
+        assertEquals(service.add(3, 4), 7);
+
+        service.ping();
+        assertTrue(pinged.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStreamResponses() throws Exception {
+        executor.setStreamResponses(true);
+        AsyncHttpJsonRpcClientTransport transport = new AsyncHttpJsonRpcClientTransport(url("/jsonrpc"));
+        NettyService service = new JsonRpcInvoker().get(transport, "netty", NettyService.class);
+
+        String value = "caf\u00e9 \u2603";
+        assertEquals(service.echo(value), value);
+        assertEquals(service.add(1, 2), 3);
+    }
+
+    @Test
+    public void testPipelining() throws Exception {
+        String slow = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"netty.delayed\",\"params\":[1,300]}";
+        String fast = "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"netty.delayed\",\"params\":[2,0]}";
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            out.write((post(slow) + post(fast)).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // the slow one completes last, but is still answered first
+            assertTrue(readBody(in).contains("\"id\":1"));
+            assertTrue(readBody(in).contains("\"id\":2"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) url("/other").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(connection.getResponseCode(), 404);
+
+        connection = (HttpURLConnection) url("/jsonrpc").openConnection();
+        assertEquals(connection.getResponseCode(), 405);
+        assertEquals(connection.getHeaderField("Allow"), "POST");
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+
+        HttpJsonRpcClientTransport transport = new HttpJsonRpcClientTransport(url("/jsonrpc"));
+        transport.setCompressRequests(true);
+        NettyService service = new JsonRpcInvoker().get(transport, "netty", NettyService.class);
+        assertEquals(service.echo(value), value);
+        assertTrue(transport.isCompressRequests());
+
+        String request = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"netty.echo\",\"params\":[\"" + value + "\"]}";
+        HttpURLConnection connection = (HttpURLConnection) url("/jsonrpc").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+        assertEquals(connection.getResponseCode(), 200);
+        assertEquals(connection.getHeaderField("Content-Encoding"), "gzip");
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(connection.getInputStream()), StandardCharsets.UTF_8));
+        assertTrue(in.readLine().contains(value));
+        in.close();
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http://127.0.0.1:" + port + path);
+    }
+
+    private static String post(String body) {
+        return "POST /jsonrpc HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+                + "\r\n"
+                + body;
+    }
+
+    private static String readBody(BufferedReader in) throws Exception {
+        int length = -1;
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        char[] body = new char[length];
+        int read = 0;
+        while (read < length) {
+            read += in.read(body, read, length - read);
+        }
+        return new String(body);
+    }
+
+    public interface NettyService {
+
+        int add(int a, int b);
+
+        CompletableFuture<Integer> delayed(int value, int millis);
+
+        @JsonRpcNotification
+        void ping();
+
+        String echo(String value);
+
+    }
+}
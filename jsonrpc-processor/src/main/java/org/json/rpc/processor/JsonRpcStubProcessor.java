@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2011 ritwik.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.rpc.processor;
+
+import org.json.rpc.commons.JsonRpcCacheable;
+import org.json.rpc.commons.JsonRpcNotification;
+import org.json.rpc.commons.JsonRpcStub;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a client stub for every {@link JsonRpcStub} interface, a class
+ * implementing the interface on top of
+ * {@link org.json.rpc.client.JsonRpcClientStub}, named after the interface
+ * with a <code>JsonRpcStub</code> suffix:
+ * <pre>
+ * Calculator calc = new CalculatorJsonRpcStub(invoker, transport, "calc");
+ * </pre>
+ * Methods are called the same as through the proxy of
+ * {@link org.json.rpc.client.JsonRpcInvoker#get}, asynchronous methods,
+ * notifications and cached methods included. Arguments are serialized by
+ * their declared type where it decides how they are serialized, i.e. for
+ * primitives, final classes, enums, arrays and collections.
+ */
+@SupportedAnnotationTypes("org.json.rpc.commons.JsonRpcStub")
+public class JsonRpcStubProcessor extends AbstractProcessor {
+
+    static final String SUFFIX = "JsonRpcStub";
+
+    private static final String STUB_CLASS = "org.json.rpc.client.JsonRpcClientStub";
+    private static final String TYPE_TOKEN = "com.google.gson.reflect.TypeToken";
+    private static final String TYPE_ADAPTER = "com.google.gson.TypeAdapter";
+    private static final String JSON_ARRAY = "com.google.gson.JsonArray";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element e : roundEnv.getElementsAnnotatedWith(JsonRpcStub.class)) {
+            if (e.getKind() != ElementKind.INTERFACE) {
+                error(e, "@JsonRpcStub can only be applied to an interface");
+                continue;
+            }
+            TypeElement type = (TypeElement) e;
+            if (!type.getTypeParameters().isEmpty()) {
+                error(e, "stubs can't be generated for generic interfaces");
+                continue;
+            }
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                error(e, "stubs can't be generated for private interfaces");
+                continue;
+            }
+
+            try {
+                generate(type);
+            } catch (IOException ex) {
+                error(e, "unable to write stub : " + ex);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        List<ExecutableElement> methods = getMethods(type);
+        for (ExecutableElement m : methods) {
+            if (!m.getTypeParameters().isEmpty()) {
+                error(m, "stubs can't be generated for generic methods");
+                return;
+            }
+            if (m.getAnnotation(JsonRpcNotification.class) != null && m.getReturnType().getKind() != TypeKind.VOID) {
+                error(m, "notification should return void");
+                return;
+            }
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.getQualifiedName().toString();
+        String stubName = getStubName(type);
+
+        StringBuilder fields = new StringBuilder();
+        StringBuilder init = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+
+        // adapters of the arguments serialized by their declared type, one per type
+        Map<String, String> adapters = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement m = methods.get(i);
+            String field = "m" + i;
+            boolean async = isAsync(m.getReturnType());
+            TypeMirror resultType = getResultType(m.getReturnType(), async);
+            String resultName = (resultType.getKind() == TypeKind.VOID ? "java.lang.Void" : boxed(resultType));
+
+            fields.append("    private final RemoteMethod<").append(resultName).append("> ").append(field).append(";\n");
+            init.append("        this.").append(field).append(" = this.<").append(resultName).append(">method(\"")
+                    .append(m.getSimpleName()).append("\", ").append(typeOf(resultType)).append(")");
+            JsonRpcCacheable cacheable = m.getAnnotation(JsonRpcCacheable.class);
+            if (cacheable != null) {
+                init.append(".cached(").append(cacheable.maxSize()).append(", ").append(cacheable.ttl())
+                        .append("L, java.util.concurrent.TimeUnit.").append(cacheable.timeUnit().name()).append(")");
+            }
+            init.append(";\n");
+
+            body.append("\n    public ").append(m.getReturnType()).append(" ").append(m.getSimpleName()).append("(");
+            List<? extends VariableElement> params = m.getParameters();
+            for (int p = 0; p < params.size(); p++) {
+                TypeMirror paramType = params.get(p).asType();
+                if (p > 0) {
+                    body.append(", ");
+                }
+                if (m.isVarArgs() && p == params.size() - 1) {
+                    body.append(((ArrayType) paramType).getComponentType()).append("...");
+                } else {
+                    body.append(paramType);
+                }
+                body.append(" arg").append(p);
+            }
+            body.append(") {\n");
+            body.append("        ").append(JSON_ARRAY).append(" params = new ").append(JSON_ARRAY).append("();\n");
+            for (int p = 0; p < params.size(); p++) {
+                TypeMirror paramType = params.get(p).asType();
+                body.append("        params.add(toJson(");
+                if (isDeclaredTypeExact(paramType)) {
+                    String typeName = boxed(paramType);
+                    String adapter = adapters.get(typeName);
+                    if (adapter == null) {
+                        adapter = "a" + adapters.size();
+                        adapters.put(typeName, adapter);
+                    }
+                    body.append(adapter).append(", ");
+                }
+                body.append("arg").append(p).append("));\n");
+            }
+
+            if (m.getAnnotation(JsonRpcNotification.class) != null) {
+                body.append("        notify(").append(field).append(", params);\n");
+            } else if (async) {
+                body.append("        return callAsync(").append(field).append(", params);\n");
+            } else if (m.getReturnType().getKind() == TypeKind.VOID) {
+                body.append("        call(").append(field).append(", params);\n");
+            } else {
+                body.append("        return call(").append(field).append(", params);\n");
+            }
+            body.append("    }\n");
+        }
+
+        for (Map.Entry<String, String> e : adapters.entrySet()) {
+            fields.append("    private final ").append(TYPE_ADAPTER).append("<").append(e.getKey()).append("> ")
+                    .append(e.getValue()).append(";\n");
+            init.append("        this.").append(e.getValue()).append(" = adapter(new ").append(TYPE_TOKEN)
+                    .append("<").append(e.getKey()).append(">() {\n        });\n");
+        }
+
+        StringBuilder src = new StringBuilder();
+        if (!pkg.isUnnamed()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        if (processingEnv.getElementUtils().getTypeElement("javax.annotation.processing.Generated") != null) {
+            src.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+        }
+        src.append("public final class ").append(stubName).append(" extends ").append(STUB_CLASS)
+                .append(" implements ").append(type.getQualifiedName()).append(" {\n\n");
+        src.append(fields).append("\n");
+        src.append("    public ").append(stubName).append("(org.json.rpc.client.JsonRpcInvoker invoker, ")
+                .append("org.json.rpc.client.JsonRpcClientTransport transport, String handle) {\n");
+        src.append("        super(invoker, transport, handle);\n");
+        src.append(init);
+        src.append("    }\n");
+        src.append(body);
+        src.append("}\n");
+
+        String qualifiedName = (pkg.isUnnamed() ? stubName : packageName + "." + stubName);
+        write(processingEnv.getFiler().createSourceFile(qualifiedName, type), src);
+    }
+
+    /**
+     * Abstract methods of the interface and the interfaces it extends, each
+     * signature once.
+     */
+    private List<ExecutableElement> getMethods(TypeElement type) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+
+        List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+        Set<String> signatures = new HashSet<String>();
+        for (Element e : elements.getAllMembers(type)) {
+            if (e.getKind() != ElementKind.METHOD || !e.getModifiers().contains(Modifier.ABSTRACT)
+                    || e.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+                continue;
+            }
+            ExecutableElement m = (ExecutableElement) e;
+
+            StringBuilder signature = new StringBuilder(m.getSimpleName());
+            for (VariableElement p : m.getParameters()) {
+                signature.append(",").append(types.erasure(p.asType()));
+            }
+            if (signatures.add(signature.toString())) {
+                methods.add(m);
+            }
+        }
+        return methods;
+    }
+
+    private static String getStubName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, e.getSimpleName());
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    /**
+     * Same as {@link org.json.rpc.commons.TypeChecker#isAsync}, the return
+     * type is a super type of <code>CompletableFuture</code>.
+     */
+    private boolean isAsync(TypeMirror returnType) {
+        if (returnType.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeElement future = processingEnv.getElementUtils().getTypeElement("java.util.concurrent.CompletableFuture");
+        TypeMirror raw = types.erasure(returnType);
+        return !raw.toString().equals("java.lang.Object") && types.isAssignable(types.erasure(future.asType()), raw);
+    }
+
+    private TypeMirror getResultType(TypeMirror returnType, boolean async) {
+        if (!async) {
+            return returnType;
+        }
+
+        List<? extends TypeMirror> args = ((DeclaredType) returnType).getTypeArguments();
+        if (args.isEmpty()) {
+            return processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType();
+        }
+        TypeMirror type = args.get(0);
+        if (type.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) type).getExtendsBound();
+            type = (bound != null ? bound : processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType());
+        }
+        return type;
+    }
+
+    /**
+     * The result type as a <code>java.lang.reflect.Type</code> expression.
+     */
+    private String typeOf(TypeMirror type) {
+        if (type.getKind() == TypeKind.VOID) {
+            return "void.class";
+        }
+        if (type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return "new " + TYPE_TOKEN + "<" + type + ">() {\n        }.getType()";
+        }
+        return processingEnv.getTypeUtils().erasure(type) + ".class";
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type)
+                    .getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    /**
+     * Whether an argument serializes the same by its declared type as by
+     * its runtime type.
+     */
+    private boolean isDeclaredTypeExact(TypeMirror type) {
+        if (type.getKind().isPrimitive() || type.getKind() == TypeKind.ARRAY) {
+            return true;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.ENUM || element.getModifiers().contains(Modifier.FINAL)) {
+            return true;
+        }
+
+        // collections and maps bind their elements by their runtime type
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+        TypeMirror raw = types.erasure(type);
+        return types.isAssignable(raw, types.erasure(elements.getTypeElement("java.util.Collection").asType()))
+                || types.isAssignable(raw, types.erasure(elements.getTypeElement("java.util.Map").asType()));
+    }
+
+    private void error(Element e, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+
+    private static void write(JavaFileObject file, CharSequence src) throws IOException {
+        Writer w = file.openWriter();
+        try {
+            w.append(src);
+        } finally {
+            w.close();
+        }
+    }
+}
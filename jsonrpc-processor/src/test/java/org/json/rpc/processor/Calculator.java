@@ -0,0 +1,46 @@
+package org.json.rpc.processor;
+
+import org.json.rpc.commons.JsonRpcCacheable;
+import org.json.rpc.commons.JsonRpcNotification;
+import org.json.rpc.commons.JsonRpcStub;
+
+import java.util.concurrent.CompletableFuture;
+
+@JsonRpcStub
+public interface Calculator {
+
+    double add(double x, double y);
+
+    int sum(int... values);
+
+    String[] split(String text, String separator);
+
+    String describe(Shape shape, Color color);
+
+    CompletableFuture<Integer> length(String text);
+
+    @JsonRpcCacheable
+    int next();
+
+    @JsonRpcNotification
+    void record(String event);
+
+    void reset();
+
+    enum Color {
+        RED, GREEN
+    }
+
+    class Shape {
+        String name;
+        int sides;
+
+        public Shape() {
+        }
+
+        public Shape(String name, int sides) {
+            this.name = name;
+            this.sides = sides;
+        }
+    }
+}
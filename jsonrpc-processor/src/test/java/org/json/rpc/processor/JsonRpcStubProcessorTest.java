@@ -0,0 +1,207 @@
+package org.json.rpc.processor;
+
+import org.json.rpc.client.JsonRpcClientTransport;
+import org.json.rpc.client.JsonRpcInvoker;
+import org.json.rpc.commons.JsonRpcStub;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerTransport;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class JsonRpcStubProcessorTest {
+
+    private JsonRpcExecutor executor;
+    private JsonRpcInvoker invoker;
+    private AtomicInteger counter;
+    private CountDownLatch recorded;
+
+    @BeforeMethod
+    public void setUp() {
+        counter = new AtomicInteger();
+        recorded = new CountDownLatch(1);
+
+        executor = new JsonRpcExecutor();
+        executor.addHandler("calc", new Calculator() {
+            public double add(double x, double y) {
+                return x + y;
+            }
+
+            public int sum(int... values) {
+                int sum = 0;
+                for (int v : values) {
+                    sum += v;
+                }
+                return sum;
+            }
+
+            public String[] split(String text, String separator) {
+                return text.split(separator);
+            }
+
+            public String describe(Shape shape, Color color) {
+                return color + " " + shape.name + " with " + shape.sides + " sides";
+            }
+
+            public java.util.concurrent.CompletableFuture<Integer> length(String text) {
+                return java.util.concurrent.CompletableFuture.completedFuture(text.length());
+            }
+
+            public int next() {
+                return counter.incrementAndGet();
+            }
+
+            public void record(String event) {
+                recorded.countDown();
+            }
+
+            public void reset() {
+                counter.set(0);
+            }
+        }, Calculator.class);
+        executor.addHandler("greeter", new Greeter() {
+            public String greet(String name) {
+                return "hello " + name;
+            }
+        }, Greeter.class);
+
+        invoker = new JsonRpcInvoker();
+        invoker.setNotificationExecutor(new Executor() {
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        Calculator calc = new CalculatorJsonRpcStub(invoker, transport(), "calc");
+
+        assertEquals(calc.add(1.2, 7.5), 8.7, 0.0001);
+        assertEquals(calc.sum(1, 2, 3), 6);
+        assertEquals(Arrays.asList(calc.split("a,b,c", ",")), Arrays.asList("a", "b", "c"));
+        assertEquals(calc.describe(new Calculator.Shape("square", 4), Calculator.Color.RED), "RED square with 4 sides");
+        assertEquals(calc.length("four").get(5, TimeUnit.SECONDS).intValue(), 4);
+
+        calc.reset();
+        calc.record("event");
+        assertTrue(recorded.await(5, TimeUnit.SECONDS));
+
+        Greeter greeter = new JsonRpcStubProcessorTest_GreeterJsonRpcStub(invoker, transport(), "greeter");
+        assertEquals(greeter.greet("you"), "hello you");
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final JsonRpcClientTransport transport = transport();
+        Calculator calc = new CalculatorJsonRpcStub(invoker, new JsonRpcClientTransport() {
+            public String call(String requestData) throws Exception {
+                calls.incrementAndGet();
+                return transport.call(requestData);
+            }
+        }, "calc");
+
+        assertEquals(calc.next(), 1);
+        assertEquals(calc.next(), 1);
+        assertEquals(calls.get(), 2);
+
+        invoker.setCacheResponses(true);
+        assertEquals(calc.next(), 1);
+        assertEquals(calc.next(), 1);
+        assertEquals(calls.get(), 3);
+    }
+
+    @Test
+    public void testInvalidUsage() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> errors = compile("Invalid",
+                "@org.json.rpc.commons.JsonRpcStub public class Invalid {}");
+        assertEquals(errors.size(), 1);
+        assertTrue(errors.get(0).getMessage(null).contains("only be applied to an interface"));
+
+        errors = compile("Notifying", "@org.json.rpc.commons.JsonRpcStub public interface Notifying {\n"
+                + "  @org.json.rpc.commons.JsonRpcNotification int record(String event);\n"
+                + "}");
+        assertEquals(errors.size(), 1);
+        assertTrue(errors.get(0).getMessage(null).contains("notification should return void"));
+
+        assertFalse(compile("Valid", "@org.json.rpc.commons.JsonRpcStub public interface Valid {\n"
+                + "  String echo(Object value);\n"
+                + "}").iterator().hasNext());
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(String name, final String source)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + name + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        // generated sources are only checked
+        File generated = Files.createTempDirectory("jsonrpc-stubs").toFile();
+        generated.deleteOnExit();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:only",
+                        "-s", generated.getPath()),
+                null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new JsonRpcStubProcessor()));
+        task.call();
+
+        List<Diagnostic<? extends JavaFileObject>> errors = new java.util.ArrayList<Diagnostic<? extends JavaFileObject>>();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(d);
+            }
+        }
+        return errors;
+    }
+
+    private JsonRpcClientTransport transport() {
+        return new JsonRpcClientTransport() {
+            public String call(final String requestData) throws Exception {
+                final StringBuilder response = new StringBuilder();
+                executor.execute(new JsonRpcServerTransport() {
+                    public String readRequest() throws Exception {
+                        return requestData;
+                    }
+
+                    public void writeResponse(String responseData) throws Exception {
+                        response.append(responseData);
+                    }
+                });
+                return response.toString();
+            }
+        };
+    }
+
+    @JsonRpcStub
+    public interface Greeter {
+        String greet(String name);
+    }
+}